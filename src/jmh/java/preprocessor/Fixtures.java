@@ -0,0 +1,83 @@
+package preprocessor;
+
+import com.github.javaparser.JavaParser;
+import com.github.javaparser.symbolsolver.JavaSymbolSolver;
+import com.github.javaparser.symbolsolver.javaparsermodel.JavaParserFacade;
+import com.github.javaparser.symbolsolver.resolution.typesolvers.CombinedTypeSolver;
+import com.github.javaparser.symbolsolver.resolution.typesolvers.JavaParserTypeSolver;
+import com.github.javaparser.symbolsolver.resolution.typesolvers.ReflectionTypeSolver;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * ベンチマーク用のソース (src/jmh/resources/fixtures) を扱う。
+ * TypeSolver はディレクトリを必要とするので、jar の中のソースを一時ディレクトリに展開して使う
+ */
+public class Fixtures {
+
+    /**
+     * fixtures/&lt;name&gt; のソースを一時ディレクトリに展開し、プロジェクトのルートを返す
+     */
+    public static Path extract(String name) throws IOException {
+        Path root = Files.createTempDirectory("fixture-" + name);
+        for (String file : listFiles(name)) {
+            Path target = root.resolve(file);
+            Files.createDirectories(target.getParent());
+            try (InputStream in = open("fixtures/" + name + "/" + file)) {
+                Files.copy(in, target);
+            }
+        }
+        return root;
+    }
+
+    public static List<String> listFiles(String name) throws IOException {
+        List<String> files = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(open("fixtures/" + name + "/files.txt"), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isBlank()) {
+                    files.add(line.strip());
+                }
+            }
+        }
+        return files;
+    }
+
+    private static InputStream open(String resource) throws IOException {
+        InputStream in = Fixtures.class.getClassLoader().getResourceAsStream(resource);
+        if (in == null) {
+            throw new IOException("missing fixture resource: " + resource);
+        }
+        return in;
+    }
+
+    /**
+     * ProjectPreprocessTask と同じ構成の JavaParser を作る
+     */
+    public static JavaParser createParser(Path projectDir) {
+        CombinedTypeSolver typeSolver = new CombinedTypeSolver();
+        typeSolver.add(new JavaParserTypeSolver(projectDir));
+        typeSolver.add(new ReflectionTypeSolver());
+        JavaParser parser = new JavaParser();
+        parser.getParserConfiguration().setSymbolResolver(new JavaSymbolSolver(typeSolver));
+        return parser;
+    }
+
+    /**
+     * 型の解決結果のキャッシュを捨てる (プロジェクトの処理の終わりと同じ状態にする)
+     */
+    public static void releaseSymbolSolverState() {
+        synchronized (JavaParserFacade.class) {
+            JavaParserFacade.clearInstances();
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package preprocessor;
+
+import org.openjdk.jmh.annotations.*;
+import preprocessor.extractor.ExtractorConfig;
+
+import java.io.File;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FormatNamesBenchmark {
+    private static final String[] METHOD_NAMES = {
+            "getOrderTotal", "parseXMLDocument", "applyPriceIncrease", "toString", "isValidEmail", "findByCustomer_v2"
+    };
+    private static final String[] PACKAGES = {
+            "com.example.shop.model", "com.example.shop.service.internal.order", "org.example", "util",
+            "com.example.shop.repository.jdbc.impl.legacy"
+    };
+
+    private AbstractProjectProcessor processor;
+    private int i = 0;
+
+    @Setup
+    public void setUp() {
+        // formatNames は出力しないので、プロジェクトのパスは使われない
+        processor = new TrainingProjectProcessor(new File("."), Paths.get("."), null, new ExtractorConfig());
+    }
+
+    @Benchmark
+    public String formatNames() {
+        // 実際の出力と同じく、同じメソッド名が候補パッケージの数だけ繰り返し現れる
+        i++;
+        return processor.formatNames(METHOD_NAMES[(i / PACKAGES.length) % METHOD_NAMES.length],
+                PACKAGES[i % PACKAGES.length], PACKAGES[(i + 1) % PACKAGES.length]);
+    }
+}
@@ -0,0 +1,119 @@
+package preprocessor.extractor;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 候補パッケージの計算。パッケージ数に対してどう伸びるかを見るため、合成したプロジェクトの feature を使う
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CandidatePackageBenchmark {
+    private static final int FILES_PER_PACKAGE = 4;
+    private static final int IMPORTS_PER_FILE = 8;
+    private static final int CALLS_PER_FILE = 4;
+
+    @Param({"100", "1000", "10000"})
+    public int packageCount;
+
+    private List<String> packages;
+    private Set<String> allPackages;
+    private List<FileFeature> fileFeatures;
+    private PackageTrie packageTrie;
+    private String[] importNames;
+    private Map<String, Set<String>> newImports;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        // ライブラリが全パッケージから import されると候補が全パッケージの組になってしまうので、
+        // ライブラリの種類もパッケージ数に比例させ、1つのライブラリを共有するパッケージ数をほぼ一定にする
+        int libraryCount = Math.max(50, packageCount / 2);
+        packages = new ArrayList<>();
+        for (int i = 0; i < packageCount; i++) {
+            packages.add("com.example.m" + (i % 10) + ".p" + i);
+        }
+        allPackages = new HashSet<>(packages);
+
+        fileFeatures = new ArrayList<>();
+        List<String> imports = new ArrayList<>();
+        for (String packageName : packages) {
+            for (int f = 0; f < FILES_PER_PACKAGE; f++) {
+                Set<String> fileImports = new HashSet<>();
+                for (int k = 0; k < IMPORTS_PER_FILE; k++) {
+                    // 半分はプロジェクト内のクラス、残りはライブラリ
+                    String importName = random.nextBoolean()
+                            ? packages.get(random.nextInt(packageCount)) + ".C" + random.nextInt(FILES_PER_PACKAGE)
+                            : "org.lib" + random.nextInt(libraryCount) + ".Util";
+                    fileImports.add(importName);
+                    imports.add(importName);
+                }
+                Set<String> calls = new HashSet<>();
+                for (int k = 0; k < CALLS_PER_FILE; k++) {
+                    calls.add(packages.get(random.nextInt(packageCount)));
+                }
+                fileFeatures.add(new FileFeature(packageName, fileImports, calls,
+                        Collections.emptyList(), Collections.emptyList()));
+            }
+        }
+        packageTrie = new PackageTrie(allPackages);
+        importNames = imports.toArray(new String[0]);
+
+        // import をパッケージに変換した後の状態 (listCandidatePackages の途中の状態) を作っておく
+        newImports = new HashMap<>();
+        for (FileFeature fileFeature : fileFeatures) {
+            Set<String> converted = newImports.computeIfAbsent(fileFeature.getPackageName(), k -> new HashSet<>());
+            for (String importName : fileFeature.getImports()) {
+                converted.add(CandidatePackageCalculator.getCorrespondingPackage(importName, packageTrie).getRight());
+            }
+        }
+    }
+
+    @Benchmark
+    public Map<String, Set<String>> listCandidatePackages() {
+        return new CandidatePackageCalculator(new ExtractorConfig()).listCandidatePackages(fileFeatures, allPackages);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(1024)
+    public void getCorrespondingPackage(Blackhole bh) {
+        for (int i = 0; i < 1024; i++) {
+            bh.consume(CandidatePackageCalculator.getCorrespondingPackage(importNames[i % importNames.length], packageTrie));
+        }
+    }
+
+    @Benchmark
+    public PackageTrie buildPackageTrie() {
+        return new PackageTrie(allPackages);
+    }
+
+    /**
+     * 同じ import を持つパッケージを候補に加える段階だけを測る (パッケージ数に対するスケーリングの確認用)
+     */
+    @Benchmark
+    public Map<String, Set<String>> addImportSharingPackages(CandidateState state) {
+        CandidatePackageCalculator.addImportSharingPackages(newImports, state.candidatePackages);
+        return state.candidatePackages;
+    }
+
+    @State(Scope.Thread)
+    public static class CandidateState {
+        Map<String, Set<String>> candidatePackages;
+
+        @Setup(Level.Invocation)
+        public void setUp(CandidatePackageBenchmark benchmark) {
+            // 候補は追加されていくので、毎回自分自身だけを候補にした状態から始める
+            candidatePackages = new HashMap<>();
+            for (String packageName : benchmark.packages) {
+                candidatePackages.put(packageName, new HashSet<>(Collections.singleton(packageName)));
+            }
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package preprocessor.extractor;
+
+import com.github.javaparser.JavaParser;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import preprocessor.Fixtures;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * チェックインしたソース (fixtures/shop) に対して抽出処理全体を測るマクロベンチマーク。
+ * 実際の処理と同じく、プロジェクトごと (呼び出しごと) に TypeSolver を作り直す
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ExtractionBenchmark {
+    private Path projectDir;
+    private List<String> sources;
+    private Set<String> allPackages;
+    private List<FileFeature> fileFeatures;
+
+    @Setup
+    public void setUp() throws IOException {
+        projectDir = Fixtures.extract("shop");
+        sources = new ArrayList<>();
+        allPackages = new HashSet<>();
+        List<Path> paths = new ArrayList<>();
+        for (String file : Fixtures.listFiles("shop")) {
+            Path path = projectDir.resolve(file);
+            paths.add(path);
+            sources.add(new String(Files.readAllBytes(path), StandardCharsets.UTF_8));
+            allPackages.add(projectDir.relativize(path).getParent().toString().replace("/", "."));
+        }
+        fileFeatures = new FeatureExtractor(() -> Fixtures.createParser(projectDir), new ExtractorConfig())
+                .extractFeatures(paths);
+        Fixtures.releaseSymbolSolverState();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(projectDir.toFile());
+    }
+
+    @Benchmark
+    public void extractPackageCall(Blackhole bh) {
+        JavaParser parser = Fixtures.createParser(projectDir);
+        try {
+            PackageCallExtractor extractor = new PackageCallExtractor(parser);
+            for (String source : sources) {
+                bh.consume(extractor.extractPackageCall(source));
+            }
+        } finally {
+            Fixtures.releaseSymbolSolverState();
+        }
+    }
+
+    @Benchmark
+    public List<FileFeature> extractFeatures() throws IOException {
+        List<Path> paths = new ArrayList<>();
+        for (String file : Fixtures.listFiles("shop")) {
+            paths.add(projectDir.resolve(file));
+        }
+        try {
+            return new FeatureExtractor(() -> Fixtures.createParser(projectDir), new ExtractorConfig())
+                    .extractFeatures(paths);
+        } finally {
+            Fixtures.releaseSymbolSolverState();
+        }
+    }
+
+    @Benchmark
+    public DistanceCalculator.DistanceCalculationResult calcDistances() {
+        return new DistanceCalculator(allPackages).calcDistances(fileFeatures);
+    }
+}
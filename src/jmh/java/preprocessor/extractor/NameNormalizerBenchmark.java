@@ -0,0 +1,60 @@
+package preprocessor.extractor;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class NameNormalizerBenchmark {
+    private static final String[] WORDS = {
+            "get", "set", "is", "create", "update", "order", "item", "price", "HTTP", "URL", "xml", "parse",
+            "value", "list", "map", "to", "from", "by", "id", "name", "IO", "buffer", "async", "v2"
+    };
+
+    private String[] names;
+
+    @Setup
+    public void setUp() {
+        // camelCase・略語・snake_case・数字を含む識別子を固定のシードで作る
+        Random random = new Random(42);
+        names = new String[1024];
+        for (int i = 0; i < names.length; i++) {
+            StringBuilder sb = new StringBuilder();
+            int words = 1 + random.nextInt(5);
+            for (int j = 0; j < words; j++) {
+                String word = WORDS[random.nextInt(WORDS.length)];
+                if (j > 0 && random.nextInt(8) == 0) {
+                    sb.append('_');
+                }
+                sb.append(j == 0 ? word : Character.toUpperCase(word.charAt(0)) + word.substring(1));
+            }
+            if (random.nextInt(6) == 0) {
+                sb.append(random.nextInt(100));
+            }
+            names[i] = sb.toString();
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(1024)
+    public void subtokenizeMethodName(Blackhole bh) {
+        for (String name : names) {
+            bh.consume(NameNormalizer.subtokenizeMethodName(name));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(1024)
+    public void normalizeName(Blackhole bh) {
+        for (String name : names) {
+            bh.consume(NameNormalizer.normalizeName(name, ""));
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package preprocessor.extractor;
+
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.*;
+import preprocessor.Fixtures;
+import preprocessor.SyntheticDatasetGenerator;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * SyntheticDatasetGenerator で作ったプロジェクトで、候補パッケージと距離の計算がパッケージ数に対してどう伸びるかを測る。
+ * 抽出 (パース・型の解決) はセットアップで1度だけ行う
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SyntheticScalingBenchmark {
+
+    @Param({"10", "100", "1000"})
+    public int packages;
+
+    private Path datasetDir;
+    private Set<String> allPackages;
+    private List<FileFeature> fileFeatures;
+
+    @Setup
+    public void setUp() throws IOException {
+        datasetDir = Files.createTempDirectory("synthetic");
+        SyntheticDatasetGenerator generator = new SyntheticDatasetGenerator();
+        generator.outputDir = datasetDir;
+        generator.trainProjects = 0;
+        generator.packages = packages;
+        generator.generate();
+
+        Path projectDir = datasetDir.resolve("test").resolve("synth000");
+        List<Path> paths;
+        try (Stream<Path> files = Files.walk(projectDir)) {
+            paths = files.filter(path -> path.toString().endsWith(".java")).sorted().collect(Collectors.toList());
+        }
+        allPackages = new HashSet<>();
+        for (Path path : paths) {
+            allPackages.add(projectDir.relativize(path).getParent().toString().replace("/", "."));
+        }
+        fileFeatures = new FeatureExtractor(() -> Fixtures.createParser(projectDir), new ExtractorConfig())
+                .extractFeatures(paths);
+        Fixtures.releaseSymbolSolverState();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(datasetDir.toFile());
+    }
+
+    @Benchmark
+    public Map<String, Set<String>> listCandidatePackages() {
+        return new CandidatePackageCalculator(new ExtractorConfig()).listCandidatePackages(fileFeatures, allPackages);
+    }
+
+    @Benchmark
+    public DistanceCalculator.DistanceCalculationResult calcDistances() {
+        return new DistanceCalculator(allPackages).calcDistances(fileFeatures);
+    }
+}
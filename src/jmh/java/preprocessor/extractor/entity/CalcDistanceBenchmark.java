@@ -0,0 +1,67 @@
+package preprocessor.extractor.entity;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CalcDistanceBenchmark {
+    // パッケージに属するエンティティの数
+    @Param({"100", "10000"})
+    public int packageSize;
+
+    // メソッドが呼び出すエンティティの数
+    @Param({"5", "50"})
+    public int methodEntities;
+
+    private Method method;
+    private Package ownPackage;
+    private Package otherPackage;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        EntityDictionary dictionary = new EntityDictionary();
+        ownPackage = createPackage("com.example.own", dictionary);
+        otherPackage = createPackage("com.example.other", dictionary);
+
+        method = new Method(Paths.get("Own.java"), "com.example.own",
+                Entity.method("com.example.own", "m0", "m()"), 1, 10);
+        List<Entity> calls = new ArrayList<>();
+        for (int i = 0; i < methodEntities; i++) {
+            String packageName = random.nextBoolean() ? "com.example.own" : "com.example.other";
+            calls.add(Entity.method(packageName, "m" + random.nextInt(packageSize), "m()"));
+        }
+        method.addEntities(calls);
+        method.internEntities(dictionary);
+    }
+
+    private Package createPackage(String name, EntityDictionary dictionary) {
+        List<Entity> entities = new ArrayList<>();
+        for (int i = 0; i < packageSize; i++) {
+            entities.add(Entity.method(name, "m" + i, "m()"));
+        }
+        Package package_ = new Package(name);
+        package_.addEntities(entities, dictionary);
+        return package_;
+    }
+
+    @Benchmark
+    public double calcDistanceToOwnPackage() {
+        return method.calcDistance(ownPackage);
+    }
+
+    @Benchmark
+    public double calcDistanceToOtherPackage() {
+        return method.calcDistance(otherPackage);
+    }
+}
@@ -0,0 +1,22 @@
+package com.example.shop.model;
+
+import com.example.shop.util.Discount;
+
+public class Customer {
+    public final String name;
+    public final String email;
+    public Discount discount = Discount.NONE;
+
+    public Customer(String name, String email) {
+        this.name = name;
+        this.email = email;
+    }
+
+    public boolean isValidEmail() {
+        return email.indexOf('@') > 0 && email.endsWith(".com");
+    }
+
+    public void promote(Discount discount) {
+        this.discount = discount.combine(this.discount);
+    }
+}
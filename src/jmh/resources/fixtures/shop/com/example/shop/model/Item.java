@@ -0,0 +1,30 @@
+package com.example.shop.model;
+
+import com.example.shop.util.Money;
+
+public class Item {
+    public final String sku;
+    public final String name;
+    private Money price;
+
+    public Item(String sku, String name, Money price) {
+        this.sku = sku;
+        this.name = name;
+        this.price = price;
+    }
+
+    public Money getPrice() {
+        return price;
+    }
+
+    public void reprice(Money newPrice) {
+        if (newPrice.isNegative()) {
+            throw new IllegalArgumentException("negative price for " + sku);
+        }
+        this.price = newPrice;
+    }
+
+    public Money priceFor(int quantity) {
+        return price.times(quantity);
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.shop.model;
+
+import com.example.shop.util.Money;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class Order {
+    public final String id;
+    public final Customer customer;
+    private final List<OrderLine> lines = new ArrayList<>();
+    private boolean closed;
+
+    public Order(String id, Customer customer) {
+        this.id = id;
+        this.customer = customer;
+    }
+
+    public void add(Item item, int quantity) {
+        if (closed) {
+            throw new IllegalStateException("order " + id + " is closed");
+        }
+        lines.add(new OrderLine(item, quantity));
+    }
+
+    public Money total() {
+        Money total = Money.ZERO;
+        for (OrderLine line : lines) {
+            total = total.plus(line.item.priceFor(line.quantity));
+        }
+        return customer.discount.applyTo(total);
+    }
+
+    public void close() {
+        closed = true;
+    }
+
+    public List<OrderLine> getLines() {
+        return lines;
+    }
+
+    public static class OrderLine {
+        public final Item item;
+        public final int quantity;
+
+        public OrderLine(Item item, int quantity) {
+            this.item = item;
+            this.quantity = quantity;
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.example.shop.repository;
+
+import com.example.shop.model.Item;
+import com.example.shop.util.Money;
+
+import java.util.HashMap;
+import java.util.Map;
+
+public class ItemRepository {
+    private final Map<String, Item> items = new HashMap<>();
+
+    public void save(Item item) {
+        items.put(item.sku, item);
+    }
+
+    public Item find(String sku) {
+        return items.get(sku);
+    }
+
+    public void applyPriceIncrease(int percent) {
+        for (Item item : items.values()) {
+            Money increase = item.getPrice().percent(percent);
+            item.reprice(item.getPrice().plus(increase));
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.example.shop.repository;
+
+import com.example.shop.model.Customer;
+import com.example.shop.model.Order;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class OrderRepository {
+    private final Map<String, Order> orders = new HashMap<>();
+
+    public void save(Order order) {
+        orders.put(order.id, order);
+    }
+
+    public Order find(String id) {
+        Order order = orders.get(id);
+        if (order == null) {
+            throw new IllegalArgumentException("unknown order " + id);
+        }
+        return order;
+    }
+
+    public List<Order> findByCustomer(Customer customer) {
+        List<Order> result = new ArrayList<>();
+        for (Order order : orders.values()) {
+            if (order.customer.email.equals(customer.email)) {
+                result.add(order);
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.shop.service;
+
+import com.example.shop.model.Customer;
+import com.example.shop.model.Item;
+import com.example.shop.model.Order;
+import com.example.shop.repository.ItemRepository;
+import com.example.shop.repository.OrderRepository;
+import com.example.shop.util.Money;
+
+public class OrderService {
+    private final OrderRepository orderRepository;
+    private final ItemRepository itemRepository;
+    private int sequence;
+
+    public OrderService(OrderRepository orderRepository, ItemRepository itemRepository) {
+        this.orderRepository = orderRepository;
+        this.itemRepository = itemRepository;
+    }
+
+    public Order open(Customer customer) {
+        if (!customer.isValidEmail()) {
+            throw new IllegalArgumentException("invalid email " + customer.email);
+        }
+        Order order = new Order("o" + (++sequence), customer);
+        orderRepository.save(order);
+        return order;
+    }
+
+    public void addItem(String orderId, String sku, int quantity) {
+        Order order = orderRepository.find(orderId);
+        Item item = itemRepository.find(sku);
+        order.add(item, quantity);
+    }
+
+    public Money checkout(String orderId) {
+        Order order = orderRepository.find(orderId);
+        order.close();
+        return order.total();
+    }
+
+    public Money lifetimeValue(Customer customer) {
+        Money total = Money.ZERO;
+        for (Order order : orderRepository.findByCustomer(customer)) {
+            total = total.plus(order.total());
+        }
+        return total;
+    }
+}
@@ -0,0 +1,19 @@
+package com.example.shop.util;
+
+public class Discount {
+    public static final Discount NONE = new Discount(0);
+
+    public final int percent;
+
+    public Discount(int percent) {
+        this.percent = percent;
+    }
+
+    public Money applyTo(Money amount) {
+        return amount.percent(100 - percent);
+    }
+
+    public Discount combine(Discount other) {
+        return new Discount(Math.min(90, percent + other.percent));
+    }
+}
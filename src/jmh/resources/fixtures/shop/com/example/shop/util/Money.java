@@ -0,0 +1,31 @@
+package com.example.shop.util;
+
+public class Money {
+    public static final Money ZERO = new Money(0);
+
+    public final long cents;
+
+    public Money(long cents) {
+        this.cents = cents;
+    }
+
+    public Money plus(Money other) {
+        return new Money(cents + other.cents);
+    }
+
+    public Money times(int factor) {
+        return new Money(cents * factor);
+    }
+
+    public Money percent(int percent) {
+        return new Money(cents * percent / 100);
+    }
+
+    public boolean isNegative() {
+        return cents < 0;
+    }
+
+    public String format() {
+        return String.format("%d.%02d", cents / 100, Math.abs(cents % 100));
+    }
+}
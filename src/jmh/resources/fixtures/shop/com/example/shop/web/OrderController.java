@@ -0,0 +1,34 @@
+package com.example.shop.web;
+
+import com.example.shop.model.Customer;
+import com.example.shop.model.Order;
+import com.example.shop.service.OrderService;
+import com.example.shop.util.Discount;
+import com.example.shop.util.Money;
+
+public class OrderController {
+    private final OrderService orderService;
+
+    public OrderController(OrderService orderService) {
+        this.orderService = orderService;
+    }
+
+    public String open(String name, String email) {
+        Customer customer = new Customer(name, email);
+        if (email.endsWith("@example.com")) {
+            customer.promote(new Discount(10));
+        }
+        Order order = orderService.open(customer);
+        return order.id;
+    }
+
+    public String add(String orderId, String sku, int quantity) {
+        orderService.addItem(orderId, sku, quantity);
+        return "ok";
+    }
+
+    public String checkout(String orderId) {
+        Money total = orderService.checkout(orderId);
+        return "total: " + total.format();
+    }
+}
@@ -2,46 +2,110 @@ package preprocessor;
 
 import com.github.javaparser.JavaParser;
 import preprocessor.extractor.ExtractorConfig;
+import preprocessor.extractor.FeatureCache;
+import preprocessor.extractor.FeatureExtractor;
+import preprocessor.extractor.FileFeature;
 import preprocessor.extractor.NameNormalizer;
 
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
-import java.util.StringJoiner;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 public abstract class AbstractProjectProcessor {
     protected final File projectDir;
     protected final Path outPath;
-    protected final JavaParser parser;
+    protected final Supplier<JavaParser> parserFactory;
     protected final ExtractorConfig cfg;
+    protected final ProjectMetrics metrics = new ProjectMetrics();
+    private final List<String> nameTokens = new ArrayList<>();
+    // 同じメソッド名は候補パッケージの数だけ繰り返し分割されるので、プロジェクト内で結果を使い回す
+    private final Map<String, List<String>> methodNameTokens = new HashMap<>();
 
-    public AbstractProjectProcessor(File projectDir, Path outPath, JavaParser parser, ExtractorConfig cfg) {
+    public AbstractProjectProcessor(File projectDir, Path outPath, Supplier<JavaParser> parserFactory, ExtractorConfig cfg) {
         this.projectDir = projectDir;
         this.outPath = outPath;
-        this.parser = parser;
+        this.parserFactory = parserFactory;
         this.cfg = cfg;
     }
 
     abstract void process() throws Exception;
 
+    /**
+     * 処理の計測値。処理が途中で失敗した場合は、そこまでの値が入っている
+     */
+    public ProjectMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * ファイルごとの feature を抽出し、抽出の件数と CPU 時間 (全抽出スレッドの合計) を記録する。
+     * package 宣言がディレクトリ構成と一致せず allPackages に含まれないファイルは、候補パッケージと距離の
+     * どちらの計算でも対象外になるよう、ここで取り除く
+     */
+    protected List<FileFeature> extractFeatures(List<Path> targetPaths, Set<String> allPackages) throws IOException {
+        FeatureExtractor extractor = createFeatureExtractor();
+        List<FileFeature> fileFeatures;
+        ProjectMetrics.PhaseTimer phase = metrics.phase("extract");
+        try {
+            fileFeatures = extractor.extractFeatures(targetPaths);
+        } finally {
+            phase.setCpuNanos(extractor.getStats().getCpuNanos());
+            phase.stop();
+            metrics.addExtractionStats(extractor.getStats());
+        }
+        return fileFeatures.stream()
+                .filter(fileFeature -> allPackages.contains(fileFeature.getPackageName()))
+                .collect(Collectors.toList());
+    }
+
+    protected FeatureExtractor createFeatureExtractor() throws IOException {
+        FeatureCache cache = cfg.cacheDir != null ? FeatureCache.open(cfg.cacheDir, projectDir.toPath()) : null;
+        return new FeatureExtractor(parserFactory, cfg, cache);
+    }
+
     protected String formatNames(String methodName, String packageNameX, String packageNameY) {
+        StringBuilder sb = new StringBuilder();
+        appendNames(sb, methodName, packageNameX, packageNameY);
+        return sb.toString();
+    }
+
+    protected void appendNames(StringBuilder sb, String methodName, String packageNameX, String packageNameY) {
+        int start = sb.length();
+        nameTokens.clear();
+        addNameTokens(nameTokens, methodName, packageNameX, packageNameY);
+        for (String token : nameTokens) {
+            if (sb.length() > start) {
+                sb.append(' ');
+            }
+            sb.append(token);
+        }
+    }
+
+    /**
+     * メソッド名と2つのパッケージ名を分割して padding した、モデルの入力になる単語列を tokens に追加する
+     */
+    protected void addNameTokens(List<String> tokens, String methodName, String packageNameX, String packageNameY) {
         // メソッド名を分割し、指定のサイズに padding する
-        List<String> nameParts = NameNormalizer.subtokenizeMethodName(methodName);
-        StringJoiner joiner = new StringJoiner(" ");
+        List<String> nameParts = methodNameTokens.computeIfAbsent(methodName,
+                name -> Collections.unmodifiableList(NameNormalizer.subtokenizeMethodName(name)));
         if (nameParts.size() < cfg.methodNameLength) {
             for (int i = 0; i < (cfg.methodNameLength - nameParts.size()); i++) {
-                joiner.add("*");
+                tokens.add(Vocabulary.PADDING);
             }
         } else {
             nameParts = nameParts.subList(0, cfg.methodNameLength);
         }
-        for (String namePart : nameParts) {
-            joiner.add(namePart);
-        }
+        tokens.addAll(nameParts);
 
         // パッケージ名を分割
         for (String packageName : Arrays.asList(packageNameX, packageNameY)) {
@@ -51,18 +115,25 @@ public abstract class AbstractProjectProcessor {
             }
             if (nameParts.size() < cfg.packageNameLength) {
                 for (int i = 0; i < (cfg.packageNameLength - nameParts.size()); i++) {
-                    joiner.add("*");
+                    tokens.add(Vocabulary.PADDING);
                 }
             }
-            for (String namePart : nameParts) {
-                joiner.add(namePart);
-            }
+            tokens.addAll(nameParts);
         }
-        return joiner.toString();
+    }
+
+    protected int nameTokenLength() {
+        return cfg.methodNameLength + 2 * cfg.packageNameLength;
     }
 
     protected String formatDistances(double distanceX, double distanceY, int label) {
-        return distanceX + " " + distanceY + " " + label;
+        StringBuilder sb = new StringBuilder();
+        appendDistances(sb, distanceX, distanceY, label);
+        return sb.toString();
+    }
+
+    protected void appendDistances(StringBuilder sb, double distanceX, double distanceY, int label) {
+        sb.append(distanceX).append(' ').append(distanceY).append(' ').append(label);
     }
 
     protected List<Path> listPaths() throws IOException {
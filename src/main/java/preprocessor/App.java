@@ -18,12 +18,21 @@ public class App {
 
         if (s_CommandLineValues.project != null) {
             ProjectPreprocessTask task = new ProjectPreprocessTask(s_CommandLineValues.project.toFile(), s_CommandLineValues.outputDir, cfg);
-            task.run();
+            if (!task.runAndReport()) {
+                // データセット単位の処理から子プロセスとして呼ばれた場合に失敗を伝える
+                System.exit(1);
+            }
         } else if (s_CommandLineValues.dataset != null) {
             DatasetPreprocessor preprocessor = new DatasetPreprocessor(
                     s_CommandLineValues.dataset,
                     s_CommandLineValues.outputDir,
                     s_CommandLineValues.numWorkers,
+                    s_CommandLineValues.fork,
+                    s_CommandLineValues.resume,
+                    new ChildHeapPolicy(s_CommandLineValues.maxChildHeapMb, s_CommandLineValues.memoryBudgetMb),
+                    s_CommandLineValues.projectTimeoutSec,
+                    s_CommandLineValues.progressIntervalSec,
+                    s_CommandLineValues.statusPort,
                     cfg,
                     s_CommandLineValues.logDir
             );
@@ -0,0 +1,70 @@
+package preprocessor;
+
+import java.util.concurrent.Semaphore;
+
+/**
+ * 子プロセスで処理する場合の、プロジェクトごとのヒープサイズの決め方と、同時に実行する子プロセスのメモリの上限。
+ * ヒープはソースの量から見積もり、OutOfMemoryError で失敗した場合は倍にして再実行する
+ */
+public class ChildHeapPolicy {
+    // 見積もりの係数。パース結果と TypeSolver のキャッシュがソースの数十倍になることを見込む
+    private static final long BASE_HEAP_MB = 512;
+    private static final long HEAP_BYTES_PER_SOURCE_BYTE = 48;
+    private static final long HEAP_BYTES_PER_FILE = 512 * 1024;
+    private static final long MIN_HEAP_MB = 1024;
+
+    private final long maxHeapMb;
+    private final long memoryBudgetMb;
+    // 1 permit = 1MB。予算を指定しない場合は null
+    private final Semaphore budget;
+
+    public ChildHeapPolicy(long maxHeapMb, long memoryBudgetMb) {
+        this.maxHeapMb = Math.max(maxHeapMb, MIN_HEAP_MB);
+        this.memoryBudgetMb = memoryBudgetMb;
+        this.budget = memoryBudgetMb > 0 ? new Semaphore(toPermits(memoryBudgetMb), true) : null;
+    }
+
+    public long estimateHeapMb(ProjectSize size) {
+        long bytes = BASE_HEAP_MB * 1024 * 1024
+                + size.getSourceBytes() * HEAP_BYTES_PER_SOURCE_BYTE
+                + size.getSourceFiles() * HEAP_BYTES_PER_FILE;
+        return clamp(bytes / (1024 * 1024));
+    }
+
+    /**
+     * OutOfMemoryError で失敗した後に使うヒープサイズ。これ以上増やせない場合は -1
+     */
+    public long nextHeapMb(long heapMb) {
+        if (heapMb >= maxHeapMb) {
+            return -1;
+        }
+        return clamp(heapMb * 2);
+    }
+
+    private long clamp(long heapMb) {
+        return Math.min(Math.max(heapMb, MIN_HEAP_MB), maxHeapMb);
+    }
+
+    /**
+     * ヒープの分だけ予算を確保する。予算より大きいヒープは、予算全体を確保して単独で実行する
+     */
+    public void acquire(long heapMb) throws InterruptedException {
+        if (budget != null) {
+            budget.acquire(permitsFor(heapMb));
+        }
+    }
+
+    public void release(long heapMb) {
+        if (budget != null) {
+            budget.release(permitsFor(heapMb));
+        }
+    }
+
+    private int permitsFor(long heapMb) {
+        return toPermits(Math.min(heapMb, memoryBudgetMb));
+    }
+
+    private static int toPermits(long mb) {
+        return (int) Math.min(mb, Integer.MAX_VALUE);
+    }
+}
@@ -0,0 +1,97 @@
+package preprocessor;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * 子プロセスを起動して終了まで見張る。
+ * 標準出力と標準エラーは別スレッドで読み続け (パイプが詰まって子プロセスが止まらないように)、
+ * 制限時間を過ぎた場合は子孫のプロセスごと強制終了する
+ */
+public class ChildProcessSupervisor {
+    // 終了後に出力の読み残しを待つ時間
+    private static final long DRAIN_TIMEOUT_MILLIS = 10_000;
+
+    private final long timeoutMillis;
+
+    /**
+     * @param timeoutMillis 制限時間。0 以下の場合は制限しない
+     */
+    public ChildProcessSupervisor(long timeoutMillis) {
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    public Outcome run(List<String> command, Consumer<String> stdout, Consumer<String> stderr)
+            throws IOException, InterruptedException {
+        Process p = new ProcessBuilder(command).start();
+        Thread stdoutDrainer = drain(p.getInputStream(), stdout, "stdout-" + p.pid());
+        Thread stderrDrainer = drain(p.getErrorStream(), stderr, "stderr-" + p.pid());
+        try {
+            boolean finished;
+            if (timeoutMillis > 0) {
+                finished = p.waitFor(timeoutMillis, TimeUnit.MILLISECONDS);
+            } else {
+                p.waitFor();
+                finished = true;
+            }
+            if (!finished) {
+                kill(p);
+            }
+            stdoutDrainer.join(DRAIN_TIMEOUT_MILLIS);
+            stderrDrainer.join(DRAIN_TIMEOUT_MILLIS);
+            return new Outcome(finished ? p.exitValue() : -1, !finished);
+        } catch (InterruptedException e) {
+            // 親が中断された場合も子プロセスを残さない
+            kill(p);
+            throw e;
+        }
+    }
+
+    private static void kill(Process p) throws InterruptedException {
+        p.descendants().forEach(ProcessHandle::destroyForcibly);
+        p.destroyForcibly();
+        p.waitFor();
+    }
+
+    private static Thread drain(InputStream inputStream, Consumer<String> consumer, String name) {
+        Thread thread = new Thread(() -> {
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    consumer.accept(line);
+                }
+            } catch (IOException e) {
+                // 強制終了でパイプが閉じられた場合など。読めた分だけで十分
+            } catch (UncheckedIOException e) {
+                // 同上
+            }
+        }, name);
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
+    public static class Outcome {
+        private final int exitCode;
+        private final boolean timedOut;
+
+        public Outcome(int exitCode, boolean timedOut) {
+            this.exitCode = exitCode;
+            this.timedOut = timedOut;
+        }
+
+        public int getExitCode() {
+            return exitCode;
+        }
+
+        public boolean isTimedOut() {
+            return timedOut;
+        }
+    }
+}
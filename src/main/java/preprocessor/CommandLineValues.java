@@ -45,6 +45,80 @@ public class CommandLineValues {
     @Option(name = "--exclude_boilerplates", required = false)
     public boolean excludeBoilerplates = false;
 
+    // 1プロジェクト内のファイルを並列に処理するスレッド数
+    @Option(name = "--extract_threads", required = false)
+    public int extractThreads = 1;
+
+    // ファイルごとの抽出結果のキャッシュ先 (指定しない場合はキャッシュしない)
+    @Option(name = "--cache_dir", required = false)
+    public Path cacheDir;
+
+    // 出力ファイルへの書き出しを別スレッドで行う
+    @Option(name = "--async_output", required = false)
+    public boolean asyncOutput = false;
+
+    // テスト用プロジェクトの出力をメソッドごとのファイルではなく test.dat と test.idx にまとめる
+    @Option(name = "--packed_test_output", required = false)
+    public boolean packedTestOutput = false;
+
+    // 語彙ファイル (word2vecNocopy.200d.txt など)。指定すると学習用の出力を単語 ID の .npy で書き出す
+    @Option(name = "--vocab", required = false)
+    public Path vocabPath;
+
+    // テスト用プロジェクトで移動されたメソッドの正解
+    @Option(name = "--move_json", required = false)
+    public Path moveJsonPath = Paths.get("move.json");
+
+    // 1つの式の型・シンボルの解決にかけてよい時間 (ms)。超えた式は解決できなかったものとして扱う。0 の場合は制限しない
+    @Option(name = "--expression_resolve_budget_ms", required = false)
+    public long expressionResolveBudgetMillis = 0;
+
+    // 1ファイルの解決にかけてよい時間の合計 (ms)。使い切った場合、そのファイルの残りの解決は飛ばす。0 の場合は制限しない
+    @Option(name = "--file_resolve_budget_ms", required = false)
+    public long fileResolveBudgetMillis = 0;
+
+    // 同じ形のメソッド呼び出し・フィールドアクセスの解決結果をプロジェクト内で使い回す
+    @Option(name = "--resolution_cache", required = false)
+    public boolean resolutionCache = false;
+
+    // プロジェクトのソースから解決した型を保持する数の上限 (パーススレッドごと)。超えた分は古いものから捨てて必要なら再パースする。
+    // 0 以下の場合は制限しない
+    @Option(name = "--type_solver_cache_size", required = false)
+    public int typeSolverCacheSize = -1;
+
+    // プロジェクトごとに JFR の記録を取り、このディレクトリに <train|test>_<プロジェクト名>.jfr として書き出す
+    @Option(name = "--jfr_dir", required = false)
+    public Path jfrDir;
+
+    // 各プロジェクトを別 JVM で処理する (クラッシュを隔離したい場合)
+    @Option(name = "--fork", required = false)
+    public boolean fork = false;
+
+    // --fork で各プロジェクトに割り当てるヒープの上限 (MB)。ヒープはソースの量から見積もる。
+    // この3つは子プロセスにしか効かないので、--fork なしで指定した場合は黙って無視せずエラーにする
+    @Option(name = "--max_child_heap_mb", required = false, depends = {"--fork"})
+    public long maxChildHeapMb = 16384;
+
+    // --fork で同時に実行する子プロセスのヒープの合計の上限 (MB)。0 の場合は制限しない
+    @Option(name = "--memory_budget_mb", required = false, depends = {"--fork"})
+    public long memoryBudgetMb = 0;
+
+    // --fork で1プロジェクトにかけてよい時間 (秒)。過ぎた場合は子プロセスを強制終了する。0 の場合は制限しない
+    @Option(name = "--project_timeout_sec", required = false, depends = {"--fork"})
+    public long projectTimeoutSec = 0;
+
+    // データセット全体の進捗をログに出す間隔 (秒)。0 の場合は出さない
+    @Option(name = "--progress_interval_sec", required = false)
+    public long progressIntervalSec = 60;
+
+    // 進捗を JSON で返す HTTP サーバのポート (localhost のみ、/status)。0 の場合は起動しない
+    @Option(name = "--status_port", required = false)
+    public int statusPort = 0;
+
+    // manifest.jsonl で完了済みのプロジェクトを飛ばし、失敗したものだけを処理し直す
+    @Option(name = "--resume", required = false)
+    public boolean resume = false;
+
     public CommandLineValues(String... args) throws CmdLineException {
         CmdLineParser parser = new CmdLineParser(this);
         try {
@@ -2,16 +2,23 @@ package preprocessor;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.commons.io.FileUtils;
 import preprocessor.extractor.ExtractorConfig;
 
 import java.io.*;
 import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
-import java.util.function.Consumer;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.logging.FileHandler;
 import java.util.logging.Handler;
 import java.util.logging.Level;
@@ -22,14 +29,46 @@ public class DatasetPreprocessor {
     private Path targetDir;
     private Path outputDir;
     private int numWorkers;
+    private boolean fork;
+    private boolean resume;
+    private ChildHeapPolicy heapPolicy;
+    private long projectTimeoutSec;
+    private long progressIntervalSec;
+    private int statusPort;
+    private ChildProcessSupervisor supervisor;
     private ExtractorConfig cfg;
 
+    // -XX:+ExitOnOutOfMemoryError で終了した場合の終了コード
+    private static final int OUT_OF_MEMORY_EXIT_CODE = 3;
+    private static final long INITIAL_HEAP_MB = 1024;
+    // 処理の終わりにログに出す、時間のかかったプロジェクトの数
+    private static final int SLOWEST_PROJECTS = 10;
+    // 出力途中・置き換え前の出力を置く場所。output_dir/<dataType> の下に置くと、評価のスクリプトがプロジェクトとして読んでしまう
+    private static final String STAGING_DIR = ".staging";
+
+    private enum ChildResult {
+        SUCCEEDED,
+        FAILED,
+        OUT_OF_MEMORY,
+        TIMED_OUT
+    }
+
     private Logger logger = Logger.getLogger(DatasetPreprocessor.class.getName());
+    private final List<ProjectMetrics> projectMetrics = new ArrayList<>();
 
-    public DatasetPreprocessor(Path targetDir, Path outputDir, int numWorkers, ExtractorConfig cfg, Path logDir) {
+    public DatasetPreprocessor(Path targetDir, Path outputDir, int numWorkers, boolean fork, boolean resume,
+                               ChildHeapPolicy heapPolicy, long projectTimeoutSec, long progressIntervalSec, int statusPort,
+                               ExtractorConfig cfg, Path logDir) {
         this.targetDir = targetDir;
         this.outputDir = outputDir;
         this.numWorkers = numWorkers;
+        this.fork = fork;
+        this.resume = resume;
+        this.heapPolicy = heapPolicy;
+        this.projectTimeoutSec = projectTimeoutSec;
+        this.progressIntervalSec = progressIntervalSec;
+        this.statusPort = statusPort;
+        this.supervisor = new ChildProcessSupervisor(TimeUnit.SECONDS.toMillis(projectTimeoutSec));
         this.cfg = cfg;
 
         logger.setLevel(Level.INFO);
@@ -46,19 +85,35 @@ public class DatasetPreprocessor {
     }
 
     public void preprocess() {
+        RunManifest manifest;
+        try {
+            manifest = new RunManifest(outputDir);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        sweepStaging();
+        List<ProjectScheduler.Job> jobs = planJobs(manifest);
+
+        // 大きなプロジェクトが最後に残って他のワーカーが遊ばないよう、長くかかりそうなものから投入する
+        List<ProjectScheduler.Job> ordered = ProjectScheduler.largestFirst(jobs);
+        logger.info(String.format("scheduled %d projects on %d workers: predicted makespan %s (%s in listing order)",
+                ordered.size(), numWorkers,
+                ProgressReporter.formatMillis(ProjectScheduler.predictMakespan(ordered, numWorkers)),
+                ProgressReporter.formatMillis(ProjectScheduler.predictMakespan(jobs, numWorkers))));
+
+        long start = System.currentTimeMillis();
         ExecutorService executor = Executors.newFixedThreadPool(numWorkers);
+        ProgressReporter progress = new ProgressReporter(ordered, logger);
+        try {
+            progress.start(progressIntervalSec, statusPort);
+        } catch (IOException e) {
+            // 進捗を見られないだけなので、処理は続ける
+            logger.log(Level.WARNING, "failed to start the progress status server on port " + statusPort, e);
+        }
         try {
             List<Future<?>> futures = new ArrayList<>();
-            for (Map.Entry<String, List<File>> en : listProjects().entrySet()) {
-                String dataType = en.getKey();
-                for (File project : en.getValue()) {
-                    Path outPath = outputDir.resolve(dataType).resolve(project.getName());
-                    if (!outPath.toFile().exists()) {
-                        outPath.toFile().mkdirs();
-                    }
-                    Future<?> future = executor.submit(() -> preprocess(project, outPath));
-                    futures.add(future);
-                }
+            for (ProjectScheduler.Job job : ordered) {
+                futures.add(executor.submit(() -> preprocess(job, manifest, progress)));
             }
             for (Future<?> future : futures) {
                 try {
@@ -69,8 +124,39 @@ public class DatasetPreprocessor {
             }
         } finally {
             executor.shutdown();
+            progress.close();
+        }
+        progress.logProgress();
+        // 全プロジェクトの出力を置き換え終えたので、空になった一時ディレクトリも消す
+        sweepStaging();
+        logger.info("complete preprocessing all projects: achieved makespan "
+                + ProgressReporter.formatMillis(System.currentTimeMillis() - start));
+        reportMetrics();
+    }
+
+    private List<ProjectScheduler.Job> planJobs(RunManifest manifest) {
+        ProjectScheduler scheduler = new ProjectScheduler(manifest.entries());
+        List<ProjectScheduler.Job> jobs = new ArrayList<>();
+        for (Map.Entry<String, List<File>> en : listProjects().entrySet()) {
+            String dataType = en.getKey();
+            for (File project : en.getValue()) {
+                Path outPath = outputDir.resolve(dataType).resolve(project.getName());
+                String projectKey = dataType + "/" + project.getName();
+                try {
+                    String fingerprint = RunManifest.inputFingerprint(project.toPath());
+                    if (resume && manifest.isCompleted(projectKey, fingerprint, outPath)) {
+                        logger.info("[" + project.getName() + "] skip completed project " + project);
+                        continue;
+                    }
+                    ProjectSize size = ProjectSize.measure(project.toPath());
+                    jobs.add(new ProjectScheduler.Job(project, projectKey, outPath, fingerprint, size,
+                            scheduler.predictMillis(projectKey, size)));
+                } catch (IOException e) {
+                    logger.log(Level.SEVERE, "[" + project.getName() + "] error processing " + project, e);
+                }
+            }
         }
-        logger.info("complete preprocessing all projects");
+        return jobs;
     }
 
     // returns {dataType, projectRoot[]}
@@ -92,14 +178,228 @@ public class DatasetPreprocessor {
         return result;
     }
 
-    private void preprocess(File projectDir, Path outPath) {
+    private void preprocess(ProjectScheduler.Job job, RunManifest manifest, ProgressReporter progress) {
+        File projectDir = job.projectDir;
+        Path outPath = job.outPath;
+        progress.started(job);
+        ProjectMetrics finished = null;
+        try {
+            // 途中までの出力が完了したものと混同されないよう、一時ディレクトリに出力してから置き換える
+            Path tmpPath = stagingPath("tmp", job);
+            FileUtils.deleteDirectory(tmpPath.toFile());
+            Files.createDirectories(tmpPath);
+
+            long start = System.currentTimeMillis();
+            AtomicReference<ProjectMetrics> metrics = new AtomicReference<>();
+            RunManifest.Status status = fork
+                    ? preprocessInChildProcess(projectDir, tmpPath, job.size, metrics)
+                    : preprocessInProcess(projectDir, tmpPath, metrics);
+            long duration = System.currentTimeMillis() - start;
+            finished = recordMetrics(job, status, duration, metrics.get());
+            progress.finished(job, finished);
+
+            RunManifest.Entry entry;
+            if (status == RunManifest.Status.SUCCEEDED) {
+                promote(tmpPath, outPath, stagingPath("old", job));
+                entry = new RunManifest.Entry(job.projectKey, RunManifest.Status.SUCCEEDED, job.inputFingerprint, duration);
+                entry.describeOutput(outPath);
+            } else {
+                FileUtils.deleteDirectory(tmpPath.toFile());
+                entry = new RunManifest.Entry(job.projectKey, status, job.inputFingerprint, duration);
+            }
+            entry.sourceBytes = job.size.getSourceBytes();
+            entry.sourceFiles = job.size.getSourceFiles();
+            manifest.record(entry);
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "[" + projectDir.getName() + "] error processing " + projectDir, e);
+        } finally {
+            // 出力先の準備などで例外になった場合も、実行中のまま残さず失敗として数える
+            if (finished == null) {
+                ProjectMetrics failed = new ProjectMetrics();
+                failed.project = job.projectKey;
+                failed.status = RunManifest.Status.FAILED;
+                progress.finished(job, failed);
+            }
+        }
+    }
+
+    private ProjectMetrics recordMetrics(ProjectScheduler.Job job, RunManifest.Status status, long duration,
+                                         ProjectMetrics metrics) {
+        // 強制終了された子プロセスなどは計測値を残さないので、分かっていることだけ記録する
+        if (metrics == null) {
+            metrics = new ProjectMetrics();
+            metrics.files = job.size.getSourceFiles();
+        }
+        metrics.project = job.projectKey;
+        metrics.status = status;
+        metrics.durationMillis = duration;
+        synchronized (projectMetrics) {
+            projectMetrics.add(metrics);
+            try {
+                Files.createDirectories(outputDir);
+                Files.write(outputDir.resolve("metrics.jsonl"),
+                        (metrics.toJson() + "\n").getBytes(StandardCharsets.UTF_8),
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "[" + job.projectDir.getName() + "] failed to record metrics", e);
+            }
+        }
+        return metrics;
+    }
+
+    /**
+     * 全プロジェクトの計測値を合計してフェーズごとの時間と時間のかかったプロジェクトをログに出し、
+     * metrics_summary.json に書く
+     */
+    private void reportMetrics() {
+        List<ProjectMetrics> metricsList;
+        synchronized (projectMetrics) {
+            metricsList = new ArrayList<>(projectMetrics);
+        }
+        if (metricsList.isEmpty()) {
+            return;
+        }
+        ProjectMetrics total = ProjectMetrics.total(metricsList);
+        for (Map.Entry<String, ProjectMetrics.Phase> en : total.phases.entrySet()) {
+            logger.info(String.format("phase %s: wall %.1fs, cpu %.1fs", en.getKey(),
+                    en.getValue().wallMillis / 1000.0, en.getValue().cpuMillis / 1000.0));
+        }
+        logger.info(String.format("files %d (parse failures %d, failed %d, degraded %d), resolution failures %d, "
+                        + "stack overflows %d, methods %d (boilerplate %d), candidates %d, lines %d",
+                total.files, total.parseFailures, total.failedFiles, total.degradedFiles, total.resolutionFailures,
+                total.stackOverflows, total.methods, total.boilerplateMethods, total.candidates, total.linesWritten));
+        if (total.resolutionCacheLookups > 0) {
+            logger.info(String.format("resolution cache: %d hits / %d lookups (%.1f%%)", total.resolutionCacheHits,
+                    total.resolutionCacheLookups, 100.0 * total.resolutionCacheHits / total.resolutionCacheLookups));
+        }
+        if (total.typeSolverCacheLookups > 0) {
+            logger.info(String.format("type solver cache: %d hits / %d lookups (%.1f%%)", total.typeSolverCacheHits,
+                    total.typeSolverCacheLookups, 100.0 * total.typeSolverCacheHits / total.typeSolverCacheLookups));
+        }
+
+        metricsList.sort(Comparator.comparingLong((ProjectMetrics m) -> m.durationMillis).reversed());
+        List<ProjectMetrics> slowest = metricsList.subList(0, Math.min(SLOWEST_PROJECTS, metricsList.size()));
+        for (ProjectMetrics m : slowest) {
+            logger.info(String.format("slow project %s: %s %s (slowest phase: %s)",
+                    m.project, ProgressReporter.formatMillis(m.durationMillis), m.status, m.slowestPhase()));
+        }
+
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("projects", metricsList.size());
+        summary.put("total", total);
+        summary.put("slowest", slowest);
+        try {
+            new ObjectMapper().writerWithDefaultPrettyPrinter()
+                    .writeValue(outputDir.resolve("metrics_summary.json").toFile(), summary);
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "failed to write the metrics summary", e);
+        }
+    }
+
+    private Path stagingPath(String kind, ProjectScheduler.Job job) {
+        return outputDir.resolve(STAGING_DIR).resolve(kind).resolve(job.projectKey);
+    }
+
+    /**
+     * 前回の実行が途中で止まって残った一時ディレクトリを消す。
+     * 以前は output_dir/&lt;dataType&gt; の中に .tmp-&lt;project&gt; と .old-&lt;project&gt; を作っていたので、それも消す
+     */
+    private void sweepStaging() {
+        try {
+            FileUtils.deleteDirectory(outputDir.resolve(STAGING_DIR).toFile());
+            File[] dataTypeDirs = outputDir.toFile().listFiles(File::isDirectory);
+            if (dataTypeDirs == null) {
+                return;
+            }
+            for (File dataTypeDir : dataTypeDirs) {
+                File[] leftovers = dataTypeDir.listFiles(f -> f.getName().startsWith(".tmp-") || f.getName().startsWith(".old-"));
+                if (leftovers == null) {
+                    continue;
+                }
+                for (File leftover : leftovers) {
+                    logger.info("remove leftover staging directory " + leftover);
+                    FileUtils.deleteDirectory(leftover);
+                }
+            }
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "failed to remove leftover staging directories in " + outputDir, e);
+        }
+    }
+
+    private void promote(Path tmpPath, Path outPath, Path oldPath) throws IOException {
+        FileUtils.deleteDirectory(oldPath.toFile());
+        Files.createDirectories(oldPath.getParent());
+        Files.createDirectories(outPath.getParent());
+        if (Files.exists(outPath)) {
+            Files.move(outPath, oldPath, StandardCopyOption.ATOMIC_MOVE);
+        }
+        Files.move(tmpPath, outPath, StandardCopyOption.ATOMIC_MOVE);
+        FileUtils.deleteDirectory(oldPath.toFile());
+    }
+
+    private RunManifest.Status preprocessInProcess(File projectDir, Path outPath, AtomicReference<ProjectMetrics> metrics) {
+        // JIT 済みのコードを使い回すため、executor のスレッド上でそのまま処理する
+        ProjectPreprocessTask task = new ProjectPreprocessTask(projectDir, outPath, cfg);
+        try {
+            task.process();
+            logger.info("[" + projectDir.getName() + "] complete preprocessing " + projectDir);
+            return RunManifest.Status.SUCCEEDED;
+        } catch (Exception | StackOverflowError | OutOfMemoryError e) {
+            // 1プロジェクトの失敗で他のプロジェクトの処理を止めない
+            logger.log(Level.SEVERE, "[" + projectDir.getName() + "] failed to process project: " + projectDir, e);
+            return RunManifest.Status.FAILED;
+        } finally {
+            metrics.set(task.getMetrics());
+        }
+    }
+
+    private RunManifest.Status preprocessInChildProcess(File projectDir, Path outPath, ProjectSize size,
+                                                        AtomicReference<ProjectMetrics> metrics) {
+        try {
+            long heapMb = heapPolicy.estimateHeapMb(size);
+            while (true) {
+                ChildResult result;
+                heapPolicy.acquire(heapMb);
+                try {
+                    result = runChildProcess(projectDir, outPath, heapMb, metrics);
+                } finally {
+                    heapPolicy.release(heapMb);
+                }
+                if (result == ChildResult.SUCCEEDED) {
+                    return RunManifest.Status.SUCCEEDED;
+                } else if (result == ChildResult.TIMED_OUT) {
+                    return RunManifest.Status.TIMEOUT;
+                } else if (result == ChildResult.FAILED) {
+                    return RunManifest.Status.FAILED;
+                }
+
+                // ヒープを増やせるうちは、途中までの出力を消してやり直す
+                long nextHeapMb = heapPolicy.nextHeapMb(heapMb);
+                if (nextHeapMb < 0) {
+                    logger.severe("[" + projectDir.getName() + "] out of memory with the maximum heap " + heapMb + "m");
+                    return RunManifest.Status.FAILED;
+                }
+                logger.warning("[" + projectDir.getName() + "] out of memory with " + heapMb + "m, retry with " + nextHeapMb + "m");
+                FileUtils.deleteDirectory(outPath.toFile());
+                Files.createDirectories(outPath);
+                heapMb = nextHeapMb;
+            }
+        } catch (IOException | InterruptedException e) {
+            logger.log(Level.SEVERE, "error processing " + projectDir, e);
+            return RunManifest.Status.FAILED;
+        }
+    }
+
+    private ChildResult runChildProcess(File projectDir, Path outPath, long heapMb, AtomicReference<ProjectMetrics> metrics) {
         try {
             String jar = new File(getClass().getProtectionDomain().getCodeSource().getLocation()
                     .toURI()).getPath();
-            Process p = new ProcessBuilder(
+            List<String> command = new ArrayList<>(Arrays.asList(
                     "java",
-                    "-Xms4g", // TODO parameterize
-                    "-Xmx16g",
+                    "-Xms" + Math.min(heapMb, INITIAL_HEAP_MB) + "m",
+                    "-Xmx" + heapMb + "m",
+                    // OutOfMemoryError をプロジェクト内で握りつぶさず、終了コードで親に伝える
+                    "-XX:+ExitOnOutOfMemoryError",
                     "-cp",
                     jar,
                     "preprocessor.App",
@@ -107,26 +407,72 @@ public class DatasetPreprocessor {
                     "--max_path_width",  "2",
                     "--project", projectDir.toPath().toAbsolutePath().toString(),
                     "--output_dir", outPath.toAbsolutePath().toString(),
-                    "--exclude_boilerplates"
-            ).start();
-            int exitCode = p.waitFor();
-            logInputStream(p.getInputStream(), line -> logger.info("[" + projectDir.getName() + "] " + line));
-            logInputStream(p.getErrorStream(), line -> logger.severe("[" + projectDir.getName() + "] " + line));
+                    "--exclude_boilerplates",
+                    "--extract_threads", String.valueOf(cfg.extractThreads),
+                    "--move_json", cfg.moveJsonPath.toAbsolutePath().toString(),
+                    "--expression_resolve_budget_ms", String.valueOf(cfg.expressionResolveBudgetMillis),
+                    "--file_resolve_budget_ms", String.valueOf(cfg.fileResolveBudgetMillis)
+            ));
+            if (cfg.asyncOutput) {
+                command.add("--async_output");
+            }
+            if (cfg.packedTestOutput) {
+                command.add("--packed_test_output");
+            }
+            if (cfg.cacheDir != null) {
+                command.addAll(Arrays.asList("--cache_dir", cfg.cacheDir.toAbsolutePath().toString()));
+            }
+            if (cfg.typeSolverCacheSize > 0) {
+                command.addAll(Arrays.asList("--type_solver_cache_size", String.valueOf(cfg.typeSolverCacheSize)));
+            }
+            if (cfg.resolutionCache) {
+                command.add("--resolution_cache");
+            }
+            if (cfg.vocabPath != null) {
+                command.addAll(Arrays.asList("--vocab", cfg.vocabPath.toAbsolutePath().toString()));
+            }
+            if (cfg.jfrDir != null) {
+                command.addAll(Arrays.asList("--jfr_dir", cfg.jfrDir.toAbsolutePath().toString()));
+            }
+            logger.info("[" + projectDir.getName() + "] start child process with -Xmx" + heapMb + "m");
+            AtomicBoolean outOfMemory = new AtomicBoolean(false);
+            // やり直す場合に前回の計測値が残らないようにする
+            metrics.set(null);
+            ChildProcessSupervisor.Outcome outcome = supervisor.run(command,
+                    line -> {
+                        if (line.startsWith(ProjectMetrics.LINE_PREFIX)) {
+                            readMetrics(projectDir, line, metrics);
+                        } else {
+                            logger.info("[" + projectDir.getName() + "] " + line);
+                        }
+                    },
+                    line -> {
+                        if (line.contains("OutOfMemoryError")) {
+                            outOfMemory.set(true);
+                        }
+                        logger.severe("[" + projectDir.getName() + "] " + line);
+                    });
+            if (outcome.isTimedOut()) {
+                logger.severe("[" + projectDir.getName() + "] killed after the timeout of " + projectTimeoutSec + "s");
+                return ChildResult.TIMED_OUT;
+            }
+            if (outcome.getExitCode() == 0) {
+                return ChildResult.SUCCEEDED;
+            }
+            return outcome.getExitCode() == OUT_OF_MEMORY_EXIT_CODE || outOfMemory.get()
+                    ? ChildResult.OUT_OF_MEMORY
+                    : ChildResult.FAILED;
         } catch (URISyntaxException | IOException | InterruptedException e) {
                 logger.log(Level.SEVERE, "error processing " + projectDir, e);
+                return ChildResult.FAILED;
         }
     }
 
-    private void logInputStream(InputStream inputStream, Consumer<String> loggingMethod) throws IOException {
-        InputStreamReader inputStreamReader = new InputStreamReader(inputStream);
-        BufferedReader bufferReader = new BufferedReader(inputStreamReader);
-        while (true) {
-            String line = bufferReader.readLine();
-            if (line != null) {
-                loggingMethod.accept(line);
-            } else {
-                break;
-            }
+    private void readMetrics(File projectDir, String line, AtomicReference<ProjectMetrics> metrics) {
+        try {
+            metrics.set(ProjectMetrics.fromJson(line.substring(ProjectMetrics.LINE_PREFIX.length())));
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "[" + projectDir.getName() + "] malformed metrics: " + line, e);
         }
     }
 }
@@ -0,0 +1,121 @@
+package preprocessor;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * move.json に記録された、テスト用プロジェクトで移動されたメソッドの正解。
+ * ファイルは1度だけストリームで読み、プロジェクトごとに (ファイルパス, 行範囲) から引ける索引を作る
+ */
+public class MoveOracle {
+    private final Map<String, Map<String, Move>> movesByProject = new HashMap<>();
+    // 同じ (ファイルパス, 行範囲) の記録が複数あるプロジェクト
+    private final Map<String, String> duplicateKeys = new HashMap<>();
+
+    private MoveOracle() {
+    }
+
+    public static MoveOracle load(Path path) throws IOException {
+        MoveOracle oracle = new MoveOracle();
+        try (InputStream in = Files.newInputStream(path);
+             JsonParser parser = new JsonFactory().createParser(in)) {
+            expect(parser, parser.nextToken(), JsonToken.START_OBJECT);
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String projectName = parser.getCurrentName();
+                expect(parser, parser.nextToken(), JsonToken.START_ARRAY);
+                Map<String, Move> moves = new HashMap<>();
+                while (parser.nextToken() == JsonToken.START_OBJECT) {
+                    Move move = readMove(parser);
+                    String key = key(move.filePath, move.lineFrom, move.lineTo);
+                    if (moves.putIfAbsent(key, move) != null) {
+                        oracle.duplicateKeys.putIfAbsent(projectName, key);
+                    }
+                }
+                oracle.movesByProject.put(projectName, moves);
+            }
+        }
+        return oracle;
+    }
+
+    private static Move readMove(JsonParser parser) throws IOException {
+        Move move = new Move();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken value = parser.nextToken();
+            switch (field) {
+                case "signature":
+                    move.signature = parser.getValueAsString();
+                    break;
+                case "file_path":
+                    move.filePath = parser.getValueAsString();
+                    break;
+                case "line_from":
+                    move.lineFrom = parser.getValueAsInt();
+                    break;
+                case "line_to":
+                    move.lineTo = parser.getValueAsInt();
+                    break;
+                case "package_orig":
+                    move.packageOrig = parser.getValueAsString();
+                    break;
+                case "class_name":
+                    move.className = parser.getValueAsString();
+                    break;
+                case "method_name":
+                    move.methodName = parser.getValueAsString();
+                    break;
+                case "package_moved":
+                    move.packageMoved = parser.getValueAsString();
+                    break;
+                default:
+                    if (value.isStructStart()) {
+                        parser.skipChildren();
+                    }
+            }
+        }
+        return move;
+    }
+
+    private static void expect(JsonParser parser, JsonToken actual, JsonToken expected) throws IOException {
+        if (actual != expected) {
+            throw new JsonParseException(parser, "expected " + expected + " but was " + actual);
+        }
+    }
+
+    /**
+     * プロジェクトの移動の索引を返す。move.json にないプロジェクトや、記録が重複しているプロジェクトでは例外を投げる
+     */
+    public Map<String, Move> movesFor(String projectName) {
+        Map<String, Move> moves = movesByProject.get(projectName);
+        if (moves == null) {
+            throw new IllegalStateException("no moves recorded for project: " + projectName);
+        }
+        if (duplicateKeys.containsKey(projectName)) {
+            throw new IllegalStateException("duplicate moves for " + projectName + ": " + duplicateKeys.get(projectName));
+        }
+        return Collections.unmodifiableMap(moves);
+    }
+
+    public static String key(String filePath, int lineFrom, int lineTo) {
+        return filePath + ":" + lineFrom + "-" + lineTo;
+    }
+
+    public static class Move {
+        public String signature;
+        public String filePath;
+        public int lineFrom;
+        public int lineTo;
+        public String packageOrig;
+        public String className;
+        public String methodName;
+        public String packageMoved;
+    }
+}
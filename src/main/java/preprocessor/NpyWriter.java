@@ -0,0 +1,114 @@
+package preprocessor;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 2次元の数値配列を numpy の .npy (version 1.0) 形式で書き出す。
+ * 行数は書き終えるまで分からないので、ヘッダは固定長で確保しておき close 時に書き直す
+ */
+public class NpyWriter implements Closeable {
+    private static final int HEADER_LENGTH = 128;
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private final Path path;
+    private final FileChannel channel;
+    private final String descr;
+    private final int columns;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    private long values = 0;
+
+    private NpyWriter(Path path, FileChannel channel, String descr, int columns) {
+        this.path = path;
+        this.channel = channel;
+        this.descr = descr;
+        this.columns = columns;
+    }
+
+    public static NpyWriter int32(Path path, int columns) throws IOException {
+        return open(path, "<i4", columns);
+    }
+
+    public static NpyWriter float32(Path path, int columns) throws IOException {
+        return open(path, "<f4", columns);
+    }
+
+    private static NpyWriter open(Path path, String descr, int columns) throws IOException {
+        FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        channel.position(HEADER_LENGTH);
+        return new NpyWriter(path, channel, descr, columns);
+    }
+
+    public void writeInt(int value) throws IOException {
+        ensureRemaining();
+        buffer.putInt(value);
+        values++;
+    }
+
+    public void writeFloat(float value) throws IOException {
+        ensureRemaining();
+        buffer.putFloat(value);
+        values++;
+    }
+
+    private void ensureRemaining() throws IOException {
+        if (buffer.remaining() < 4) {
+            flushBuffer();
+        }
+    }
+
+    private void flushBuffer() throws IOException {
+        OutputFlushEvent event = new OutputFlushEvent();
+        event.begin();
+        buffer.flip();
+        int length = buffer.remaining();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+        event.end();
+        if (event.shouldCommit()) {
+            event.file = path.toString();
+            event.length = length;
+            event.commit();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flushBuffer();
+            if (values % columns != 0) {
+                throw new IllegalStateException("incomplete row: " + values + " values for " + columns + " columns");
+            }
+            channel.write(header(values / columns), 0);
+        } finally {
+            channel.close();
+        }
+    }
+
+    private ByteBuffer header(long rows) {
+        String dict = "{'descr': '" + descr + "', 'fortran_order': False, 'shape': (" + rows + ", " + columns + "), }";
+        StringBuilder sb = new StringBuilder(dict);
+        // magic (6) + version (2) + ヘッダ長 (2) の後に続くヘッダを、改行込みで HEADER_LENGTH に揃える
+        while (10 + sb.length() + 1 < HEADER_LENGTH) {
+            sb.append(' ');
+        }
+        sb.append('\n');
+        byte[] dictBytes = sb.toString().getBytes(StandardCharsets.US_ASCII);
+        ByteBuffer header = ByteBuffer.allocate(10 + dictBytes.length).order(ByteOrder.LITTLE_ENDIAN);
+        header.put((byte) 0x93).put("NUMPY".getBytes(StandardCharsets.US_ASCII));
+        header.put((byte) 1).put((byte) 0);
+        header.putShort((short) dictBytes.length);
+        header.put(dictBytes);
+        header.flip();
+        return header;
+    }
+}
@@ -0,0 +1,26 @@
+package preprocessor;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * 出力ファイルへのバッファの書き出し (JFR のイベント)
+ */
+@Name("preprocessor.OutputFlush")
+@Label("Output Flush")
+@Category("Preprocessor")
+@Description("Write of one buffer to an output file")
+public class OutputFlushEvent extends jdk.jfr.Event {
+    @Label("File")
+    public String file;
+
+    // テキストの出力では文字数、.npy ではバイト数
+    @Label("Length")
+    public long length;
+
+    // 非同期モードの書き出し専用スレッドで書いた
+    @Label("Async")
+    public boolean async;
+}
@@ -0,0 +1,206 @@
+package preprocessor;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * 出力ファイルへの書き込み先。書き込まれた文字列を大きなバッファに溜めて UTF-8 でまとめて書き出す。
+ * 非同期モードでは、書き出しを専用のスレッドで行い、呼び出し側は次のバッファへの書き込みを続けられる
+ */
+public class OutputSink implements Closeable {
+    public static final int DEFAULT_BUFFER_SIZE = 1 << 20;
+
+    private final String path;
+    private final Writer writer;
+    private final AsyncWriter asyncWriter;
+    private char[] buffer;
+    private int position = 0;
+    private long bytesWritten = 0;
+
+    private OutputSink(String path, Writer writer, int bufferSize, boolean async) {
+        this.path = path;
+        this.writer = writer;
+        this.buffer = new char[bufferSize];
+        this.asyncWriter = async ? new AsyncWriter(path, writer, bufferSize) : null;
+    }
+
+    public static OutputSink open(Path path, boolean async) throws IOException {
+        return open(path, async, DEFAULT_BUFFER_SIZE);
+    }
+
+    public static OutputSink open(Path path, boolean async, int bufferSize) throws IOException {
+        Writer writer = new OutputStreamWriter(
+                new BufferedOutputStream(Files.newOutputStream(path), bufferSize), StandardCharsets.UTF_8);
+        return new OutputSink(path.toString(), writer, bufferSize, async);
+    }
+
+    public void write(StringBuilder sb) throws IOException {
+        int length = sb.length();
+        bytesWritten += utf8Length(sb);
+        int offset = 0;
+        while (offset < length) {
+            if (position == buffer.length) {
+                flushBuffer();
+            }
+            int n = Math.min(length - offset, buffer.length - position);
+            sb.getChars(offset, offset + n, buffer, position);
+            position += n;
+            offset += n;
+        }
+    }
+
+    /**
+     * これまでに書き込まれた内容の UTF-8 でのバイト数
+     */
+    public long position() {
+        return bytesWritten;
+    }
+
+    private static int utf8Length(CharSequence cs) {
+        int length = 0;
+        for (int i = 0; i < cs.length(); i++) {
+            char c = cs.charAt(i);
+            if (c < 0x80) {
+                length += 1;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < cs.length() && Character.isLowSurrogate(cs.charAt(i + 1))) {
+                // サロゲートペアは合わせて4バイト
+                length += 4;
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                // 対になっていないサロゲートは '?' に置き換えられる
+                length += 1;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    private void flushBuffer() throws IOException {
+        if (position == 0) {
+            return;
+        }
+        if (asyncWriter != null) {
+            buffer = asyncWriter.submit(buffer, position);
+        } else {
+            write(path, writer, buffer, position, false);
+        }
+        position = 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flushBuffer();
+            if (asyncWriter != null) {
+                asyncWriter.close();
+            }
+        } finally {
+            writer.close();
+        }
+    }
+
+    private static void write(String path, Writer writer, char[] chars, int length, boolean async) throws IOException {
+        OutputFlushEvent event = new OutputFlushEvent();
+        event.begin();
+        writer.write(chars, 0, length);
+        event.end();
+        if (event.shouldCommit()) {
+            event.file = path;
+            event.length = length;
+            event.async = async;
+            event.commit();
+        }
+    }
+
+    private static class AsyncWriter implements Runnable {
+        // 書き出し待ちにできるバッファの数
+        private static final int SPARE_BUFFERS = 2;
+        private static final Chunk END = new Chunk(null, 0);
+
+        private final String path;
+        private final Writer writer;
+        private final BlockingQueue<Chunk> filled = new ArrayBlockingQueue<>(SPARE_BUFFERS + 1);
+        private final BlockingQueue<char[]> free = new ArrayBlockingQueue<>(SPARE_BUFFERS + 1);
+        private final Thread thread;
+        private volatile IOException error;
+
+        private AsyncWriter(String path, Writer writer, int bufferSize) {
+            this.path = path;
+            this.writer = writer;
+            for (int i = 0; i < SPARE_BUFFERS; i++) {
+                free.add(new char[bufferSize]);
+            }
+            this.thread = new Thread(this, "output-sink-writer");
+            this.thread.setDaemon(true);
+            this.thread.start();
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (true) {
+                    Chunk chunk = filled.take();
+                    if (chunk == END) {
+                        break;
+                    }
+                    if (error == null) {
+                        try {
+                            write(path, writer, chunk.chars, chunk.length, true);
+                        } catch (IOException e) {
+                            error = e;
+                        }
+                    }
+                    free.put(chunk.chars);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        // 書き込み済みのバッファを渡し、次に書き込むための空きバッファを受け取る
+        private char[] submit(char[] chars, int length) throws IOException {
+            checkError();
+            try {
+                filled.put(new Chunk(chars, length));
+                return free.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            }
+        }
+
+        private void close() throws IOException {
+            try {
+                filled.put(END);
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            }
+            checkError();
+        }
+
+        private void checkError() throws IOException {
+            if (error != null) {
+                throw error;
+            }
+        }
+    }
+
+    private static class Chunk {
+        private final char[] chars;
+        private final int length;
+
+        private Chunk(char[] chars, int length) {
+            this.chars = chars;
+            this.length = length;
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package preprocessor;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * データセット全体の処理の進捗。完了・実行中・待ちのプロジェクト数、ファイル・メソッドの処理速度、
+ * 実行時間の長いプロジェクトと、ソースの量で重み付けした残り時間の見積もりを定期的にログに出す。
+ * ポートを指定した場合は、同じ内容を localhost の HTTP で JSON として返す
+ */
+public class ProgressReporter implements Closeable {
+    // ログと JSON に含める、実行時間の長いプロジェクトの数
+    private static final int LONGEST_RUNNING = 5;
+    // 実行中のプロジェクトは、見積もりを過ぎていてもこの割合までしか終わったとみなさない
+    private static final double MAX_RUNNING_PROGRESS = 0.9;
+
+    private final int totalProjects;
+    private final long totalBytes;
+    private final Logger logger;
+    private final long startMillis = System.currentTimeMillis();
+    private final Map<String, Running> running = new ConcurrentHashMap<>();
+    private final ObjectMapper mapper = new ObjectMapper();
+    private ScheduledExecutorService timer;
+    private HttpServer server;
+
+    private int done = 0;
+    private int failed = 0;
+    private long doneBytes = 0;
+    private long doneFiles = 0;
+    private long doneMethods = 0;
+
+    public ProgressReporter(List<ProjectScheduler.Job> jobs, Logger logger) {
+        this.totalProjects = jobs.size();
+        this.totalBytes = jobs.stream().mapToLong(job -> job.size.getSourceBytes()).sum();
+        this.logger = logger;
+    }
+
+    /**
+     * intervalSec ごとのログ出力 (0 以下なら出さない) と、port での HTTP の応答 (0 以下なら応答しない) を始める
+     */
+    public void start(long intervalSec, int port) throws IOException {
+        if (intervalSec > 0) {
+            timer = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "progress-reporter");
+                thread.setDaemon(true);
+                return thread;
+            });
+            timer.scheduleAtFixedRate(this::logProgress, intervalSec, intervalSec, TimeUnit.SECONDS);
+        }
+        if (port > 0) {
+            // 外部には公開しない
+            server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+            server.createContext("/status", this::handleStatus);
+            server.start();
+            logger.info("progress status at http://localhost:" + server.getAddress().getPort() + "/status");
+        }
+    }
+
+    // snapshot() が完了・実行中・待ちの数を食い違いなく数えられるよう、running の更新もロックの中で行う
+    public synchronized void started(ProjectScheduler.Job job) {
+        running.put(job.projectKey, new Running(job, System.currentTimeMillis()));
+    }
+
+    public synchronized void finished(ProjectScheduler.Job job, ProjectMetrics metrics) {
+        done++;
+        if (metrics.status != RunManifest.Status.SUCCEEDED) {
+            failed++;
+        }
+        doneBytes += job.size.getSourceBytes();
+        doneFiles += metrics.files;
+        doneMethods += metrics.methods;
+        running.remove(job.projectKey);
+    }
+
+    public synchronized Snapshot snapshot() {
+        long now = System.currentTimeMillis();
+        Snapshot snapshot = new Snapshot();
+        snapshot.elapsedMillis = now - startMillis;
+        snapshot.total = totalProjects;
+        snapshot.done = done;
+        snapshot.failed = failed;
+        snapshot.running = running.size();
+        snapshot.queued = totalProjects - done - snapshot.running;
+        double elapsedSec = Math.max(snapshot.elapsedMillis, 1) / 1000.0;
+        snapshot.filesPerSec = doneFiles / elapsedSec;
+        snapshot.methodsPerSec = doneMethods / elapsedSec;
+
+        // 実行中のプロジェクトは、見積もりに対する経過時間の割合だけ終わったものとして数える
+        double processedBytes = doneBytes;
+        List<Running> runningList = new ArrayList<>(running.values());
+        for (Running r : runningList) {
+            double progress = r.job.predictedMillis > 0
+                    ? Math.min((double) (now - r.startMillis) / r.job.predictedMillis, MAX_RUNNING_PROGRESS)
+                    : 0;
+            processedBytes += r.job.size.getSourceBytes() * progress;
+        }
+        // 処理した量から速度を求め、残りのソースの量にかかる時間を見積もる
+        snapshot.etaMillis = processedBytes > 0
+                ? (long) ((totalBytes - processedBytes) * snapshot.elapsedMillis / processedBytes)
+                : -1;
+
+        runningList.sort(Comparator.comparingLong((Running r) -> r.startMillis));
+        snapshot.longestRunning = new ArrayList<>();
+        for (Running r : runningList.subList(0, Math.min(LONGEST_RUNNING, runningList.size()))) {
+            RunningProject project = new RunningProject();
+            project.project = r.job.projectKey;
+            project.elapsedMillis = now - r.startMillis;
+            project.predictedMillis = r.job.predictedMillis;
+            project.sourceBytes = r.job.size.getSourceBytes();
+            snapshot.longestRunning.add(project);
+        }
+        return snapshot;
+    }
+
+    public void logProgress() {
+        Snapshot s = snapshot();
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("progress: %d/%d done (%d failed), %d running, %d queued; %.1f files/s, %.1f methods/s; ETA %s",
+                s.done, s.total, s.failed, s.running, s.queued, s.filesPerSec, s.methodsPerSec,
+                s.etaMillis >= 0 ? formatMillis(s.etaMillis) : "unknown"));
+        if (!s.longestRunning.isEmpty()) {
+            sb.append("; longest running:");
+            for (RunningProject p : s.longestRunning) {
+                sb.append(' ').append(p.project).append(" (").append(formatMillis(p.elapsedMillis)).append(')');
+            }
+        }
+        logger.info(sb.toString());
+    }
+
+    private void handleStatus(HttpExchange exchange) throws IOException {
+        try {
+            byte[] body = mapper.writerWithDefaultPrettyPrinter().writeValueAsBytes(snapshot());
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "failed to send progress status", e);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    static String formatMillis(long millis) {
+        return String.format("%d:%02d:%02d", millis / 3600000, millis / 60000 % 60, millis / 1000 % 60);
+    }
+
+    @Override
+    public void close() {
+        if (timer != null) {
+            timer.shutdownNow();
+        }
+        if (server != null) {
+            server.stop(0);
+        }
+    }
+
+    private static class Running {
+        private final ProjectScheduler.Job job;
+        private final long startMillis;
+
+        private Running(ProjectScheduler.Job job, long startMillis) {
+            this.job = job;
+            this.startMillis = startMillis;
+        }
+    }
+
+    public static class Snapshot {
+        public long elapsedMillis;
+        public int total;
+        public int done;
+        public int failed;
+        public int running;
+        public int queued;
+        public double filesPerSec;
+        public double methodsPerSec;
+        // 見積もれない場合は -1
+        public long etaMillis;
+        public List<RunningProject> longestRunning;
+    }
+
+    public static class RunningProject {
+        public String project;
+        public long elapsedMillis;
+        public long predictedMillis;
+        public long sourceBytes;
+    }
+}
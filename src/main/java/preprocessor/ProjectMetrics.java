@@ -0,0 +1,200 @@
+package preprocessor;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import preprocessor.extractor.ExtractionStats;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.ThreadMXBean;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 1プロジェクトの処理の計測値。フェーズごとの経過時間・CPU 時間と、処理した件数を持つ。
+ * --project で子プロセスとして実行した場合は標準出力に1行の JSON として書き、親プロセスが読み取る
+ */
+public class ProjectMetrics {
+    // 標準出力でこの接頭辞から始まる行が計測値
+    public static final String LINE_PREFIX = "project metrics: ";
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+    private static final ObjectMapper MAPPER = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    public String project;
+    public RunManifest.Status status;
+    public long durationMillis;
+    // 記録した順に並ぶ
+    public Map<String, Phase> phases = new LinkedHashMap<>();
+    public long files;
+    public long packages;
+    public long filesParsed;
+    public long filesFromCache;
+    public long parseFailures;
+    public long failedFiles;
+    public long degradedFiles;
+    public long resolutionFailures;
+    public long stackOverflows;
+    public long skippedExpressions;
+    public long methods;
+    public long boilerplateMethods;
+    // --resolution_cache を指定した場合のみ
+    public long resolutionCacheLookups;
+    public long resolutionCacheHits;
+    public long resolutionCacheEntries;
+    // --type_solver_cache_size を指定した場合のみ。常駐数は処理の終了時の全パーサースレッドの合計
+    public long typeSolverCacheLookups;
+    public long typeSolverCacheHits;
+    public long typeSolverResidentTypes;
+    public long typeSolverResidentUnits;
+    // (メソッド, 候補パッケージ) の組の数
+    public long candidates;
+    // 学習用は1サンプル、テスト用は出力ファイルの1行を1と数える
+    public long linesWritten;
+    // プロジェクトの開始時にリセットしたピーク。同じ JVM で他のプロジェクトと並行して処理した場合は
+    // プロジェクトごとの値にならないので -1
+    public long peakHeapBytes = -1;
+
+    /**
+     * フェーズの計測を始める。stop した時点までの経過時間と、このスレッドの CPU 時間を加算する
+     */
+    public PhaseTimer phase(String name) {
+        return new PhaseTimer(phases.computeIfAbsent(name, k -> new Phase()));
+    }
+
+    public void addExtractionStats(ExtractionStats stats) {
+        filesParsed += stats.getFilesParsed();
+        filesFromCache += stats.getFilesFromCache();
+        parseFailures += stats.getParseFailures();
+        failedFiles += stats.getFailedFiles();
+        degradedFiles += stats.getDegradedFiles();
+        resolutionFailures += stats.getResolutionFailures();
+        stackOverflows += stats.getStackOverflows();
+        skippedExpressions += stats.getSkippedExpressions();
+        methods += stats.getMethods();
+        boilerplateMethods += stats.getBoilerplateMethods();
+        resolutionCacheLookups += stats.getResolutionCacheLookups();
+        resolutionCacheHits += stats.getResolutionCacheHits();
+        resolutionCacheEntries += stats.getResolutionCacheEntries();
+    }
+
+    /**
+     * ヒープの各領域のピークを現在の使用量に戻す。JVM 全体の値なので、他のプロジェクトを処理していないときに呼ぶ
+     */
+    public static void resetPeakHeap() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && pool.isValid()) {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+
+    public void recordPeakHeap() {
+        // ヒープの各領域のピークの合計 (同時にピークになるとは限らないので、やや多めになる)
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && pool.getPeakUsage() != null) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        peakHeapBytes = peak;
+    }
+
+    /**
+     * 経過時間が最も長いフェーズの名前
+     */
+    public String slowestPhase() {
+        String slowest = null;
+        for (Map.Entry<String, Phase> en : phases.entrySet()) {
+            if (slowest == null || en.getValue().wallMillis > phases.get(slowest).wallMillis) {
+                slowest = en.getKey();
+            }
+        }
+        return slowest;
+    }
+
+    /**
+     * 複数のプロジェクトの計測値を合計する。ピークのヒープは最大値を取る
+     */
+    public static ProjectMetrics total(List<ProjectMetrics> metricsList) {
+        ProjectMetrics total = new ProjectMetrics();
+        total.project = "total";
+        for (ProjectMetrics m : metricsList) {
+            total.durationMillis += m.durationMillis;
+            for (Map.Entry<String, Phase> en : m.phases.entrySet()) {
+                Phase phase = total.phases.computeIfAbsent(en.getKey(), k -> new Phase());
+                phase.wallMillis += en.getValue().wallMillis;
+                phase.cpuMillis += en.getValue().cpuMillis;
+            }
+            total.files += m.files;
+            total.packages += m.packages;
+            total.filesParsed += m.filesParsed;
+            total.filesFromCache += m.filesFromCache;
+            total.parseFailures += m.parseFailures;
+            total.failedFiles += m.failedFiles;
+            total.degradedFiles += m.degradedFiles;
+            total.resolutionFailures += m.resolutionFailures;
+            total.stackOverflows += m.stackOverflows;
+            total.skippedExpressions += m.skippedExpressions;
+            total.methods += m.methods;
+            total.boilerplateMethods += m.boilerplateMethods;
+            total.resolutionCacheLookups += m.resolutionCacheLookups;
+            total.resolutionCacheHits += m.resolutionCacheHits;
+            total.resolutionCacheEntries += m.resolutionCacheEntries;
+            total.typeSolverCacheLookups += m.typeSolverCacheLookups;
+            total.typeSolverCacheHits += m.typeSolverCacheHits;
+            total.typeSolverResidentTypes += m.typeSolverResidentTypes;
+            total.typeSolverResidentUnits += m.typeSolverResidentUnits;
+            total.candidates += m.candidates;
+            total.linesWritten += m.linesWritten;
+            total.peakHeapBytes = Math.max(total.peakHeapBytes, m.peakHeapBytes);
+        }
+        return total;
+    }
+
+    public String toJson() {
+        try {
+            return MAPPER.writeValueAsString(this);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public static ProjectMetrics fromJson(String json) throws IOException {
+        return MAPPER.readValue(json, ProjectMetrics.class);
+    }
+
+    public static class Phase {
+        public long wallMillis;
+        public long cpuMillis;
+    }
+
+    public static class PhaseTimer {
+        private final Phase phase;
+        private final long wallStart = System.nanoTime();
+        private final long cpuStart = THREADS.getCurrentThreadCpuTime();
+        private long cpuNanos = -1;
+
+        private PhaseTimer(Phase phase) {
+            this.phase = phase;
+        }
+
+        /**
+         * 処理を他のスレッドで行った場合に、このスレッドの CPU 時間の代わりに記録する CPU 時間を指定する
+         */
+        public void setCpuNanos(long cpuNanos) {
+            this.cpuNanos = cpuNanos;
+        }
+
+        public void stop() {
+            long cpu = cpuNanos >= 0 ? cpuNanos : THREADS.getCurrentThreadCpuTime() - cpuStart;
+            phase.wallMillis += (System.nanoTime() - wallStart) / 1_000_000;
+            phase.cpuMillis += cpu / 1_000_000;
+        }
+    }
+}
@@ -5,19 +5,37 @@ import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.github.javaparser.JavaParser;
 import com.github.javaparser.symbolsolver.JavaSymbolSolver;
+import com.github.javaparser.symbolsolver.javaparsermodel.JavaParserFacade;
 import com.github.javaparser.symbolsolver.resolution.typesolvers.CombinedTypeSolver;
 import com.github.javaparser.symbolsolver.resolution.typesolvers.JavaParserTypeSolver;
 import com.github.javaparser.symbolsolver.resolution.typesolvers.ReflectionTypeSolver;
 import preprocessor.extractor.*;
 
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+
 import java.io.*;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.text.ParseException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Supplier;
 
-public class ProjectPreprocessTask implements Runnable {
+public class ProjectPreprocessTask {
+    // 同じ JVM で処理中のプロジェクト
+    private static final Set<ProjectPreprocessTask> ACTIVE = new HashSet<>();
 
     private final File projectDir;
     private final Path outPath;
     private final ExtractorConfig cfg;
+    // 統計の表示用に、このプロジェクトで作った上限付きの TypeSolver を覚えておく
+    private final List<BoundedTypeSolver> boundedTypeSolvers = new CopyOnWriteArrayList<>();
+    private ProjectMetrics metrics;
+    // 処理中に他のプロジェクトも同じ JVM で処理していた
+    private boolean overlapped;
 
     public ProjectPreprocessTask(File projectDir, Path outPath, ExtractorConfig cfg) {
         this.projectDir = projectDir;
@@ -25,29 +43,143 @@ public class ProjectPreprocessTask implements Runnable {
         this.cfg = cfg;
     }
 
-    @Override
-    public void run() {
-        JavaParser parser = createParser(projectDir.toPath());
+    public boolean runAndReport() {
+        boolean succeeded;
         try {
-            if (projectDir.getParent().endsWith("/test")) {
-                var processor = new TestProjectProcessor(projectDir, outPath, parser, cfg);
-                processor.process();
-            } else {
-                var processor = new TrainingProjectProcessor(projectDir, outPath, parser, cfg);
-                processor.process();
-            }
+            process();
             System.out.println("complete preprocessing " + projectDir);
+            succeeded = true;
         } catch (Exception e) {
             System.err.println("failed to process project: " + projectDir);
             e.printStackTrace(System.err);
+            succeeded = false;
+        }
+        // データセット単位の処理から子プロセスとして呼ばれた場合に、親プロセスが集計できるよう1行で出力する
+        if (metrics != null) {
+            metrics.status = succeeded ? RunManifest.Status.SUCCEEDED : RunManifest.Status.FAILED;
+            System.out.println(ProjectMetrics.LINE_PREFIX + metrics.toJson());
+        }
+        return succeeded;
+    }
+
+    /**
+     * 処理の計測値。process() を呼ぶ前は null
+     */
+    public ProjectMetrics getMetrics() {
+        return metrics;
+    }
+
+    public void process() throws Exception {
+        // JavaParser と TypeSolver はプロジェクトごとに作り直し、他のプロジェクトと共有しない
+        Supplier<JavaParser> parserFactory = () -> createParser(projectDir.toPath());
+        AbstractProjectProcessor processor = projectDir.getParent().endsWith("/test")
+                ? new TestProjectProcessor(projectDir, outPath, parserFactory, cfg)
+                : new TrainingProjectProcessor(projectDir, outPath, parserFactory, cfg);
+        metrics = processor.getMetrics();
+        metrics.project = projectDir.getName();
+        Recording recording = cfg.jfrDir != null ? startRecording() : null;
+        try {
+            enter();
+            try {
+                processor.process();
+            } finally {
+                leave();
+            }
+        } finally {
+            recordTypeSolverCache();
+            if (recording != null) {
+                stopRecording(recording);
+            }
+        }
+    }
+
+    private void enter() {
+        synchronized (ACTIVE) {
+            if (ACTIVE.isEmpty()) {
+                // ヒープのピークは JVM 全体の値なので、他に処理中のプロジェクトがない場合だけリセットして測る
+                ProjectMetrics.resetPeakHeap();
+            } else {
+                overlapped = true;
+                for (ProjectPreprocessTask task : ACTIVE) {
+                    task.overlapped = true;
+                }
+            }
+            ACTIVE.add(this);
+        }
+    }
+
+    private void leave() {
+        synchronized (ACTIVE) {
+            ACTIVE.remove(this);
+            if (!overlapped) {
+                metrics.recordPeakHeap();
+            }
+        }
+        releaseSymbolSolverState();
+    }
+
+    /**
+     * JFR の記録を始める。JDK の default の設定に、パース・解決・書き出しのイベントを加えたもの。
+     * 同じ JVM で複数のプロジェクトを並行して処理している場合は、他のプロジェクトのイベントも含まれる
+     */
+    private Recording startRecording() throws IOException, ParseException {
+        Files.createDirectories(cfg.jfrDir);
+        Path destination = cfg.jfrDir.resolve(projectDir.getParentFile().getName() + "_" + projectDir.getName() + ".jfr");
+        Recording recording = new Recording(Configuration.getConfiguration("default"));
+        recording.setName(projectDir.getName());
+        recording.enable(ParseEvent.class);
+        recording.enable(ResolveEvent.class);
+        recording.enable(OutputFlushEvent.class);
+        recording.setDestination(destination);
+        recording.start();
+        return recording;
+    }
+
+    private void stopRecording(Recording recording) {
+        try {
+            // destination を設定しているので、止めた時点でファイルに書き出される
+            recording.stop();
+            System.out.println("JFR recording written to " + recording.getDestination());
+        } catch (IllegalStateException e) {
+            System.err.println("failed to write JFR recording: " + e.getMessage());
+        } finally {
+            recording.close();
+        }
+    }
+
+    // 並行して処理される他のプロジェクトと混ざらないよう、標準出力には書かずプロジェクトの計測値に含める
+    private void recordTypeSolverCache() {
+        for (BoundedTypeSolver solver : boundedTypeSolvers) {
+            metrics.typeSolverCacheHits += solver.getHits();
+            metrics.typeSolverCacheLookups += solver.getHits() + solver.getMisses();
+            metrics.typeSolverResidentTypes += solver.residentTypes();
+            metrics.typeSolverResidentUnits += solver.residentCompilationUnits();
+        }
+    }
+
+    private static void releaseSymbolSolverState() {
+        // JavaParserFacade は TypeSolver ごとのインスタンスを static な WeakHashMap に保持するが、
+        // 値が キーの TypeSolver を強参照しているため解放されない。同一 JVM で多数のプロジェクトを
+        // 処理するとリークするので、プロジェクトの終了時に破棄する。
+        // get() は JavaParserFacade.class で同期しているので、同じロックの中で消せば他のプロジェクトの get() と競合しない。
+        // 処理中の他のプロジェクトは、次の get() で作り直されたインスタンスを使う (それまでのキャッシュは失われる)
+        synchronized (JavaParserFacade.class) {
+            JavaParserFacade.clearInstances();
         }
     }
 
     private JavaParser createParser(Path projectDir) {
         CombinedTypeSolver typeSolver = new CombinedTypeSolver();
-        typeSolver.add(new JavaParserTypeSolver(projectDir));
+        if (cfg.typeSolverCacheSize > 0) {
+            BoundedTypeSolver boundedTypeSolver = new BoundedTypeSolver(projectDir, cfg.typeSolverCacheSize);
+            boundedTypeSolvers.add(boundedTypeSolver);
+            typeSolver.add(boundedTypeSolver);
+        } else {
+            typeSolver.add(new JavaParserTypeSolver(projectDir));
+        }
         typeSolver.add(new ReflectionTypeSolver());
-        JavaSymbolSolver symbolSolver = new JavaSymbolSolver(typeSolver);
+        // 解決の予算を確かめられるよう、型の問い合わせはすべて BudgetedTypeSolver を通す
+        JavaSymbolSolver symbolSolver = new JavaSymbolSolver(new BudgetedTypeSolver(typeSolver));
         JavaParser parser = new JavaParser();
         parser.getParserConfiguration().setSymbolResolver(symbolSolver);
         return parser;
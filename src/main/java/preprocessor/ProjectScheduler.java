@@ -0,0 +1,86 @@
+package preprocessor;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * データセットのプロジェクトを処理する順番を決める。
+ * 処理時間を前回の実行結果 (manifest.jsonl) かソースの量から見積もり、長いものから順に投入する
+ */
+public class ProjectScheduler {
+    // 実行結果がない場合の、ソース 1 バイトあたりの処理時間 (ms) の目安
+    private static final double DEFAULT_MILLIS_PER_BYTE = 0.05;
+
+    private final Map<String, Long> previousDurations = new HashMap<>();
+    private final double millisPerByte;
+
+    public ProjectScheduler(Collection<RunManifest.Entry> entries) {
+        long durations = 0;
+        long bytes = 0;
+        for (RunManifest.Entry entry : entries) {
+            if (entry.status != RunManifest.Status.SUCCEEDED) {
+                continue;
+            }
+            previousDurations.put(entry.project, entry.durationMillis);
+            if (entry.sourceBytes > 0) {
+                durations += entry.durationMillis;
+                bytes += entry.sourceBytes;
+            }
+        }
+        this.millisPerByte = bytes > 0 ? (double) durations / bytes : DEFAULT_MILLIS_PER_BYTE;
+    }
+
+    public long predictMillis(String projectKey, ProjectSize size) {
+        Long previous = previousDurations.get(projectKey);
+        if (previous != null) {
+            return previous;
+        }
+        return (long) (size.getSourceBytes() * millisPerByte);
+    }
+
+    /**
+     * 見積もりの長い順に並べる (Longest Processing Time first)
+     */
+    public static List<Job> largestFirst(List<Job> jobs) {
+        List<Job> ordered = new ArrayList<>(jobs);
+        ordered.sort(Comparator.comparingLong((Job job) -> job.predictedMillis).reversed());
+        return ordered;
+    }
+
+    /**
+     * 与えられた順に空いたワーカーへ投入した場合の、見積もり上の全体の処理時間
+     */
+    public static long predictMakespan(List<Job> jobs, int workers) {
+        PriorityQueue<Long> finishTimes = new PriorityQueue<>();
+        for (int i = 0; i < workers; i++) {
+            finishTimes.add(0L);
+        }
+        long makespan = 0;
+        for (Job job : jobs) {
+            long finish = finishTimes.poll() + job.predictedMillis;
+            finishTimes.add(finish);
+            makespan = Math.max(makespan, finish);
+        }
+        return makespan;
+    }
+
+    public static class Job {
+        public final File projectDir;
+        public final String projectKey;
+        public final Path outPath;
+        public final String inputFingerprint;
+        public final ProjectSize size;
+        public final long predictedMillis;
+
+        public Job(File projectDir, String projectKey, Path outPath, String inputFingerprint, ProjectSize size,
+                   long predictedMillis) {
+            this.projectDir = projectDir;
+            this.projectKey = projectKey;
+            this.outPath = outPath;
+            this.inputFingerprint = inputFingerprint;
+            this.size = size;
+            this.predictedMillis = predictedMillis;
+        }
+    }
+}
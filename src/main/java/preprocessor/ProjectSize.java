@@ -0,0 +1,41 @@
+package preprocessor;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+/**
+ * プロジェクトのソースファイル (.java) の数と合計サイズ
+ */
+public class ProjectSize {
+    private final long sourceBytes;
+    private final int sourceFiles;
+
+    public ProjectSize(long sourceBytes, int sourceFiles) {
+        this.sourceBytes = sourceBytes;
+        this.sourceFiles = sourceFiles;
+    }
+
+    public static ProjectSize measure(Path projectDir) throws IOException {
+        long bytes = 0;
+        int files = 0;
+        try (Stream<Path> paths = Files.walk(projectDir)) {
+            for (Path path : (Iterable<Path>) paths::iterator) {
+                if (path.toString().endsWith(".java") && Files.isRegularFile(path)) {
+                    bytes += Files.size(path);
+                    files++;
+                }
+            }
+        }
+        return new ProjectSize(bytes, files);
+    }
+
+    public long getSourceBytes() {
+        return sourceBytes;
+    }
+
+    public int getSourceFiles() {
+        return sourceFiles;
+    }
+}
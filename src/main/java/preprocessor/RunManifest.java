@@ -0,0 +1,168 @@
+package preprocessor;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * データセット全体の処理で、プロジェクトごとの処理結果を出力ディレクトリの manifest.jsonl に追記していく。
+ * 同じプロジェクトの記録が複数ある場合は最後のものが有効になる
+ */
+public class RunManifest {
+
+    public enum Status {
+        SUCCEEDED,
+        FAILED,
+        // --fork で制限時間を過ぎて強制終了された
+        TIMEOUT
+    }
+
+    private final Path manifestPath;
+    private final ObjectMapper mapper = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    private final Map<String, Entry> entries = new HashMap<>();
+
+    public RunManifest(Path outputDir) throws IOException {
+        this.manifestPath = outputDir.resolve("manifest.jsonl");
+        if (Files.exists(manifestPath)) {
+            for (String line : Files.readAllLines(manifestPath, StandardCharsets.UTF_8)) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                try {
+                    Entry entry = mapper.readValue(line, Entry.class);
+                    entries.put(entry.project, entry);
+                } catch (IOException e) {
+                    // 書き込み途中で中断された行は無視する
+                }
+            }
+        }
+    }
+
+    public synchronized Optional<Entry> get(String project) {
+        return Optional.ofNullable(entries.get(project));
+    }
+
+    public synchronized List<Entry> entries() {
+        return new ArrayList<>(entries.values());
+    }
+
+    public synchronized boolean isCompleted(String project, String inputFingerprint, Path outPath) {
+        Entry entry = entries.get(project);
+        return entry != null
+                && entry.status == Status.SUCCEEDED
+                && entry.inputFingerprint.equals(inputFingerprint)
+                && Files.isDirectory(outPath);
+    }
+
+    public synchronized void record(Entry entry) throws IOException {
+        entries.put(entry.project, entry);
+        byte[] line = (mapper.writeValueAsString(entry) + "\n").getBytes(StandardCharsets.UTF_8);
+        Files.createDirectories(manifestPath.getParent());
+        try (FileChannel channel = FileChannel.open(manifestPath,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            channel.write(ByteBuffer.wrap(line));
+            // 強制終了されても記録が残るようにする
+            channel.force(true);
+        }
+    }
+
+    /**
+     * 入力プロジェクトの指紋。ソースファイルのパス・サイズ・更新時刻から作る
+     */
+    public static String inputFingerprint(Path projectDir) throws IOException {
+        MessageDigest digest = newDigest();
+        for (Path path : listFiles(projectDir, path -> path.toString().endsWith(".java"))) {
+            File file = path.toFile();
+            digest.update((projectDir.relativize(path) + ":" + file.length() + ":" + file.lastModified() + "\n")
+                    .getBytes(StandardCharsets.UTF_8));
+        }
+        return toHex(digest.digest());
+    }
+
+    private static List<Path> listFiles(Path dir, Predicate<Path> filter) throws IOException {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            return paths.filter(Files::isRegularFile)
+                    .filter(filter)
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder();
+        for (byte b : bytes) {
+            sb.append(String.format("%02x", b));
+        }
+        return sb.toString();
+    }
+
+    public static class Entry {
+        public String project;
+        public Status status;
+        public String inputFingerprint;
+        public long sourceBytes;
+        public int sourceFiles;
+        public String outputChecksum;
+        public long outputFiles;
+        public long outputBytes;
+        public long durationMillis;
+        public long finishedAt;
+
+        public Entry() {
+        }
+
+        public Entry(String project, Status status, String inputFingerprint, long durationMillis) {
+            this.project = project;
+            this.status = status;
+            this.inputFingerprint = inputFingerprint;
+            this.durationMillis = durationMillis;
+            this.finishedAt = System.currentTimeMillis();
+        }
+
+        /**
+         * 出力ディレクトリのファイル数・サイズと、ファイル名と内容から作ったチェックサムを記録する
+         */
+        public void describeOutput(Path outPath) throws IOException {
+            MessageDigest digest = newDigest();
+            for (Path path : listFiles(outPath, path -> true)) {
+                digest.update(outPath.relativize(path).toString().getBytes(StandardCharsets.UTF_8));
+                try (InputStream in = new BufferedInputStream(Files.newInputStream(path))) {
+                    byte[] buffer = new byte[1 << 16];
+                    int n;
+                    while ((n = in.read(buffer)) > 0) {
+                        digest.update(buffer, 0, n);
+                        outputBytes += n;
+                    }
+                }
+                outputFiles++;
+            }
+            outputChecksum = toHex(digest.digest());
+        }
+    }
+}
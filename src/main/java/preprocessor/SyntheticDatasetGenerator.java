@@ -0,0 +1,263 @@
+package preprocessor;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.PropertyNamingStrategy;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.kohsuke.args4j.CmdLineException;
+import org.kohsuke.args4j.CmdLineParser;
+import org.kohsuke.args4j.Option;
+import preprocessor.MoveOracle.Move;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * スケーリングの計測や動作確認に使う合成データセットを作る。
+ * DatasetPreprocessor が読む dataset/&lt;train|test&gt;/&lt;project&gt; の構成でソースを書き出し、
+ * テスト用プロジェクトの移動の正解を move.json に書く。同じ引数からは常に同じ出力になる
+ */
+public class SyntheticDatasetGenerator {
+    private static final String[] VERBS = {
+            "get", "compute", "update", "find", "create", "load", "save", "check", "build", "apply",
+            "resolve", "merge", "parse", "format", "validate", "register", "notify", "convert", "collect", "reset"
+    };
+    private static final String[] NOUNS = {
+            "order", "item", "customer", "account", "invoice", "payment", "price", "stock", "report", "user",
+            "session", "token", "address", "message", "event", "schedule", "cache", "config", "record", "task"
+    };
+    // 同じモジュール (10パッケージごと) の中から import する割合
+    private static final double LOCAL_IMPORT_RATIO = 0.5;
+
+    @Option(name = "--output_dir", required = true)
+    public Path outputDir;
+
+    // move.json の出力先 (指定しない場合は output_dir の直下)
+    @Option(name = "--move_json", required = false)
+    public Path moveJsonPath;
+
+    @Option(name = "--train_projects", required = false)
+    public int trainProjects = 1;
+
+    @Option(name = "--test_projects", required = false)
+    public int testProjects = 1;
+
+    @Option(name = "--packages", required = false)
+    public int packages = 10;
+
+    @Option(name = "--files_per_package", required = false)
+    public int filesPerPackage = 5;
+
+    @Option(name = "--methods_per_class", required = false)
+    public int methodsPerClass = 5;
+
+    // 1ファイルが import する他パッケージのクラスの数
+    @Option(name = "--import_fan_out", required = false)
+    public int importFanOut = 3;
+
+    // 1メソッドあたりの、import したクラスのメソッドの呼び出し数 (平均)
+    @Option(name = "--call_density", required = false)
+    public double callDensity = 1.0;
+
+    // テスト用プロジェクトごとに move.json に記録する移動の数
+    @Option(name = "--moves_per_project", required = false)
+    public int movesPerProject = 10;
+
+    @Option(name = "--seed", required = false)
+    public long seed = 42;
+
+    private final Logger logger = Logger.getLogger(SyntheticDatasetGenerator.class.getName());
+
+    public static void main(String[] args) {
+        SyntheticDatasetGenerator generator = new SyntheticDatasetGenerator();
+        CmdLineParser parser = new CmdLineParser(generator);
+        try {
+            parser.parseArgument(args);
+            generator.generate();
+        } catch (CmdLineException e) {
+            e.printStackTrace();
+            parser.printUsage(System.err);
+        } catch (IOException e) {
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+
+    public void generate() throws IOException {
+        // 前回の出力が残っていると同じ引数でも結果が変わるので、空のディレクトリにだけ書く
+        if (Files.isDirectory(outputDir)) {
+            try (Stream<Path> entries = Files.list(outputDir)) {
+                if (entries.findAny().isPresent()) {
+                    throw new FileAlreadyExistsException(outputDir.toString(), null, "output directory is not empty");
+                }
+            }
+        }
+        for (int i = 0; i < trainProjects; i++) {
+            generateProject("train", projectName(i), new Random(projectSeed("train", i)), 0);
+        }
+        Map<String, List<Move>> moves = new LinkedHashMap<>();
+        for (int i = 0; i < testProjects; i++) {
+            String projectName = projectName(i);
+            moves.put(projectName, generateProject("test", projectName, new Random(projectSeed("test", i)), movesPerProject));
+        }
+
+        Path movePath = moveJsonPath != null ? moveJsonPath : outputDir.resolve("move.json");
+        ObjectMapper mapper = new ObjectMapper()
+                .setPropertyNamingStrategy(PropertyNamingStrategy.SNAKE_CASE)
+                .disable(SerializationFeature.FAIL_ON_EMPTY_BEANS);
+        mapper.writeValue(movePath.toFile(), moves);
+        logger.info("generated " + trainProjects + " train and " + testProjects + " test projects ("
+                + packages + " packages x " + filesPerPackage + " files) in " + outputDir + ", moves in " + movePath);
+    }
+
+    private static String projectName(int index) {
+        return String.format("synth%03d", index);
+    }
+
+    private long projectSeed(String dataType, int index) {
+        return seed * 1_000_003L + dataType.hashCode() * 31L + index;
+    }
+
+    /**
+     * 1プロジェクト分のソースを書き出し、移動したことにするメソッドを moveCount 個まで選んで返す
+     */
+    private List<Move> generateProject(String dataType, String projectName, Random random, int moveCount) throws IOException {
+        Path projectDir = outputDir.resolve(dataType).resolve(projectName);
+        List<String> packageNames = new ArrayList<>(packages);
+        for (int i = 0; i < packages; i++) {
+            packageNames.add("com.synth.m" + (i / 10) + ".p" + i);
+        }
+
+        List<Move> movable = new ArrayList<>();
+        for (int i = 0; i < packages; i++) {
+            Path packageDir = projectDir.resolve(packageNames.get(i).replace('.', '/'));
+            Files.createDirectories(packageDir);
+            for (int f = 0; f < filesPerPackage; f++) {
+                List<int[]> imports = chooseImports(i, random);
+                List<String> lines = new ArrayList<>();
+                List<Move> methods = writeClass(lines, packageNames, i, f, imports, random);
+                Path file = packageDir.resolve(className(i, f) + ".java");
+                Files.write(file, lines, StandardCharsets.UTF_8);
+
+                // import したパッケージはどれも元のパッケージの候補になるので、そこから移動してきたことにする
+                String relativePath = "/" + dataType + "/" + projectName + "/" + projectDir.relativize(file);
+                for (Move method : methods) {
+                    if (imports.isEmpty()) {
+                        break;
+                    }
+                    method.filePath = relativePath;
+                    method.packageMoved = packageNames.get(imports.get(random.nextInt(imports.size()))[0]);
+                    movable.add(method);
+                }
+            }
+        }
+
+        Collections.shuffle(movable, random);
+        List<Move> moves = new ArrayList<>(movable.subList(0, Math.min(moveCount, movable.size())));
+        moves.sort(Comparator.comparing((Move m) -> m.filePath).thenComparingInt(m -> m.lineFrom));
+        return moves;
+    }
+
+    /**
+     * import する他パッケージのクラスを (パッケージ, ファイル) の組で選ぶ
+     */
+    private List<int[]> chooseImports(int packageIndex, Random random) {
+        List<int[]> imports = new ArrayList<>();
+        if (packages < 2) {
+            return imports;
+        }
+        Set<Integer> chosen = new HashSet<>();
+        int limit = Math.min(importFanOut, (packages - 1) * filesPerPackage);
+        while (imports.size() < limit) {
+            int target;
+            int moduleStart = packageIndex / 10 * 10;
+            int moduleSize = Math.min(10, packages - moduleStart);
+            if (moduleSize > 1 && random.nextDouble() < LOCAL_IMPORT_RATIO) {
+                target = moduleStart + random.nextInt(moduleSize);
+            } else {
+                target = random.nextInt(packages);
+            }
+            int file = random.nextInt(filesPerPackage);
+            if (target != packageIndex && chosen.add(target * filesPerPackage + file)) {
+                imports.add(new int[]{target, file});
+            }
+        }
+        return imports;
+    }
+
+    private List<Move> writeClass(List<String> lines, List<String> packageNames, int packageIndex, int fileIndex,
+                                  List<int[]> imports, Random random) {
+        String packageName = packageNames.get(packageIndex);
+        String className = className(packageIndex, fileIndex);
+        lines.add("package " + packageName + ";");
+        lines.add("");
+        for (int[] target : imports) {
+            lines.add("import " + packageNames.get(target[0]) + "." + className(target[0], target[1]) + ";");
+        }
+        if (!imports.isEmpty()) {
+            lines.add("");
+        }
+        lines.add("public class " + className + " {");
+        String countField = noun(random) + "Count";
+        String nameField = noun(random) + "Name";
+        lines.add("    private int " + countField + ";");
+        lines.add("    private String " + nameField + " = \"" + className + "\";");
+        for (int d = 0; d < imports.size(); d++) {
+            String type = className(imports.get(d)[0], imports.get(d)[1]);
+            lines.add("    private final " + type + " dep" + d + " = new " + type + "();");
+        }
+
+        List<Move> methods = new ArrayList<>();
+        for (int j = 0; j < methodsPerClass; j++) {
+            String methodName = methodName(packageIndex, fileIndex, j);
+            lines.add("");
+            Move method = new Move();
+            method.lineFrom = lines.size() + 1;
+            lines.add("    public int " + methodName + "(int value) {");
+            lines.add("        int result = value + " + countField + " + " + nameField + ".length();");
+            int calls = (int) callDensity + (random.nextDouble() < callDensity - (int) callDensity ? 1 : 0);
+            for (int c = 0; c < calls && !imports.isEmpty(); c++) {
+                int d = random.nextInt(imports.size());
+                int[] target = imports.get(d);
+                String callee = methodName(target[0], target[1], random.nextInt(methodsPerClass));
+                lines.add("        result += dep" + d + "." + callee + "(result);");
+            }
+            if (j > 0) {
+                lines.add("        result += " + methodName(packageIndex, fileIndex, j - 1) + "(result);");
+            }
+            lines.add("        " + countField + " = result;");
+            lines.add("        return result;");
+            lines.add("    }");
+            method.lineTo = lines.size();
+            method.signature = methodName + "(int)";
+            method.packageOrig = packageName;
+            method.className = className;
+            method.methodName = methodName;
+            methods.add(method);
+        }
+        lines.add("}");
+        return methods;
+    }
+
+    // クラス名はプロジェクト内で一意にし、同じ単純名のクラスを import しないようにする
+    private static String className(int packageIndex, int fileIndex) {
+        String noun = NOUNS[(packageIndex * 7 + fileIndex) % NOUNS.length];
+        return Character.toUpperCase(noun.charAt(0)) + noun.substring(1) + packageIndex + "_" + fileIndex;
+    }
+
+    // 呼び出し側から引けるよう、メソッド名はクラスと位置から決める
+    private static String methodName(int packageIndex, int fileIndex, int methodIndex) {
+        int h = packageIndex * 31 + fileIndex * 17 + methodIndex * 13;
+        String noun = NOUNS[(h / VERBS.length + methodIndex) % NOUNS.length];
+        return VERBS[h % VERBS.length] + Character.toUpperCase(noun.charAt(0)) + noun.substring(1) + methodIndex;
+    }
+
+    private static String noun(Random random) {
+        return NOUNS[random.nextInt(NOUNS.length)];
+    }
+}
@@ -1,56 +1,124 @@
 package preprocessor;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.github.javaparser.JavaParser;
+import preprocessor.MoveOracle.Move;
 import preprocessor.extractor.CandidatePackageCalculator;
 import preprocessor.extractor.DistanceCalculator;
+import preprocessor.extractor.DistanceMatrix;
 import preprocessor.extractor.ExtractorConfig;
+import preprocessor.extractor.FileFeature;
 import preprocessor.extractor.entity.Method;
-import preprocessor.extractor.entity.Package;
 
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.function.Supplier;
 
 public class TestProjectProcessor extends AbstractProjectProcessor {
 
-    public TestProjectProcessor(File projectDir, Path outPath, JavaParser parser, ExtractorConfig cfg) {
-        super(projectDir, outPath, parser, cfg);
+    public TestProjectProcessor(File projectDir, Path outPath, Supplier<JavaParser> parserFactory, ExtractorConfig cfg) {
+        super(projectDir, outPath, parserFactory, cfg);
     }
 
     @Override
     public void process() throws Exception {
         Files.createDirectories(outPath);
 
-        List<Path> targetPaths = listPaths();
+        List<Path> targetPaths;
         Set<String> allPackages = new HashSet<>();
-        for (Path path : targetPaths) {
-            path = projectDir.toPath().relativize(path);
-            String packageName = path.getParent().toString().replace("/", ".");
-            allPackages.add(packageName);
+        ProjectMetrics.PhaseTimer phase = metrics.phase("list");
+        try {
+            targetPaths = listPaths();
+            for (Path path : targetPaths) {
+                path = projectDir.toPath().relativize(path);
+                String packageName = path.getParent().toString().replace("/", ".");
+                allPackages.add(packageName);
+            }
+        } finally {
+            phase.stop();
+        }
+        metrics.files = targetPaths.size();
+        metrics.packages = allPackages.size();
+
+        // 各ファイルのパースは1度だけ行い、候補パッケージと距離の計算で共有する
+        List<FileFeature> fileFeatures = extractFeatures(targetPaths, allPackages);
+        Map<String, Set<String>> candidatePackages;
+        phase = metrics.phase("candidates");
+        try {
+            candidatePackages = new CandidatePackageCalculator(cfg).listCandidatePackages(fileFeatures, allPackages);
+        } finally {
+            phase.stop();
+        }
+        DistanceCalculator.DistanceCalculationResult result;
+        phase = metrics.phase("distances");
+        try {
+            result = new DistanceCalculator(allPackages).calcDistances(fileFeatures);
+        } finally {
+            phase.stop();
         }
 
-        var candidatePackages = new CandidatePackageCalculator(parser, cfg).listCandidatePackages(targetPaths, allPackages);
-        var result = new DistanceCalculator(parser, allPackages, targetPaths).calcDistances();
-
-        Map<String, Move> moves = parseJson().stream()
-                .collect(Collectors.toMap(m -> moveKey(m.filePath, m.lineFrom, m.lineTo), m -> m));
+        phase = metrics.phase("output");
+        try {
+            Map<String, Move> moves = cfg.moveOracle().movesFor(projectDir.getName());
+            DistanceMatrix distances = new DistanceMatrix(result.getPackages());
+            if (cfg.packedTestOutput) {
+                writePacked(result.getMethods(), moves, candidatePackages, distances);
+            } else {
+                writeFiles(result.getMethods(), moves, candidatePackages, distances);
+            }
+        } finally {
+            phase.stop();
+        }
+    }
 
+    private void writeFiles(Collection<Method> methods, Map<String, Move> moves,
+                            Map<String, Set<String>> candidatePackages, DistanceMatrix distances) throws IOException {
+        StringBuilder line = new StringBuilder();
         int i = 0;
-        for (Method method : result.getMethods()) {
-            write(method, moves, candidatePackages, result.getPackages(), outPath.resolve(i + ".txt"));
+        for (Method method : methods) {
+            TestRecord record = createRecord(method, moves, candidatePackages);
+            if (record != null) {
+                // 1メソッド1ファイルの小さな出力なので、バッファは小さくてよい
+                try (OutputSink sink = OutputSink.open(outPath.resolve(i + ".txt"), false, 8192)) {
+                    writeRecord(sink, line, method, record, distances);
+                }
+            }
             i++;
         }
+    }
 
+    private void writePacked(Collection<Method> methods, Map<String, Move> moves,
+                             Map<String, Set<String>> candidatePackages, DistanceMatrix distances) throws IOException {
+        // 全メソッドのレコードを1つのファイルに連結し、各レコードの開始位置 (バイト) を別ファイルに書く
+        long[] offsets = new long[methods.size() + 1];
+        int count = 0;
+        StringBuilder line = new StringBuilder();
+        try (OutputSink sink = OutputSink.open(outPath.resolve("test.dat"), cfg.asyncOutput)) {
+            for (Method method : methods) {
+                TestRecord record = createRecord(method, moves, candidatePackages);
+                if (record == null) {
+                    continue;
+                }
+                offsets[count++] = sink.position();
+                writeRecord(sink, line, method, record, distances);
+            }
+            offsets[count] = sink.position();
+        }
+
+        // レコード i は [offsets[i], offsets[i + 1]) の範囲にある。リトルエンディアンの int64 で並べる。
+        // レコードが1件もない場合も、空の test.dat と 0 だけを持つ test.idx を書き、読む側はレコードなしとして扱う
+        ByteBuffer index = ByteBuffer.allocate(8 * (count + 1)).order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = 0; i <= count; i++) {
+            index.putLong(offsets[i]);
+        }
+        Files.write(outPath.resolve("test.idx"), index.array());
     }
 
-    private void write(Method method, Map<String, Move> moves, Map<String, Set<String>> candidatePackages,
-                       Map<String, Package> packages, Path out) throws IOException {
+    private TestRecord createRecord(Method method, Map<String, Move> moves, Map<String, Set<String>> candidatePackages) {
         String packageNameEc;
         List<String> packageNamePtc;
         int correctIndex;
@@ -61,7 +129,7 @@ public class TestProjectProcessor extends AbstractProjectProcessor {
             packageNamePtc.remove(move.get().packageMoved);
             int idx = packageNamePtc.indexOf(move.get().packageOrig);
             if (idx == -1) {
-                return;
+                return null;
             }
             correctIndex = idx;
         } else {
@@ -71,50 +139,36 @@ public class TestProjectProcessor extends AbstractProjectProcessor {
             correctIndex = -1;
         }
         if (!candidatePackages.containsKey(packageNameEc) || packageNamePtc.isEmpty()) {
-            return;
-        }
-
-        try (FileWriter writer = new FileWriter(out.toFile())) {
-            writer.write(correctIndex + "\n");
-            for (String packageNameTc : packageNamePtc) {
-                double distanceEc = method.calcDistance(packages.get(packageNameEc));
-                double distanceTc = method.calcDistance(packages.get(packageNameTc));
-                String methodName = method.asEntity().getName();
-                writer.write(formatNames(methodName, packageNameEc, packageNameTc) + " "
-                        + formatDistances(distanceEc, distanceTc, 0) + "\n");
-            }
+            return null;
         }
+        return new TestRecord(correctIndex, packageNameEc, packageNamePtc);
     }
 
-
-    private List<Move> parseJson() throws IOException {
-        String projectName = projectDir.getName();
-        ObjectMapper mapper = new ObjectMapper();
-        JsonNode moveJson = mapper.readTree(new File("move.json")).get(projectName);
-        List<Move> moves = new ArrayList<>();
-        for (JsonNode m : moveJson) {
-            moves.add(new Move(
-                    m.get("signature").asText(),
-                    m.get("file_path").asText(),
-                    m.get("line_from").asInt(),
-                    m.get("line_to").asInt(),
-                    m.get("package_orig").asText(),
-                    m.get("class_name").asText(),
-                    m.get("method_name").asText(),
-                    m.get("package_moved").asText()
-            ));
+    private void writeRecord(OutputSink sink, StringBuilder line, Method method, TestRecord record,
+                             DistanceMatrix distances) throws IOException {
+        metrics.candidates += record.packageNamePtc.size();
+        metrics.linesWritten += 1 + record.packageNamePtc.size();
+        double distanceEc = distances.get(method, record.packageNameEc);
+        String methodName = method.asEntity().getName();
+        line.setLength(0);
+        line.append(record.correctIndex).append('\n');
+        sink.write(line);
+        for (String packageNameTc : record.packageNamePtc) {
+            double distanceTc = distances.get(method, packageNameTc);
+            line.setLength(0);
+            appendNames(line, methodName, record.packageNameEc, packageNameTc);
+            line.append(' ');
+            appendDistances(line, distanceEc, distanceTc, 0);
+            line.append('\n');
+            sink.write(line);
         }
-        return moves;
     }
 
-    private String moveKey(String filePath, int lineFrom, int lineTo) {
-        return filePath + ":" + lineFrom + "-" + lineTo;
-    }
 
     private Optional<Move> getMethodMove(Method method, Map<String, Move> moves) {
         Path filePath = method.getFilePath();
         String relativePath = projectDir.toPath().getParent().getParent().relativize(filePath).toString();
-        String key = moveKey("/" + relativePath, method.getLineFrom(), method.getLineTo());
+        String key = MoveOracle.key("/" + relativePath, method.getLineFrom(), method.getLineTo());
         Move move = moves.get(key);
         if (move == null) {
             return Optional.empty();
@@ -126,25 +180,15 @@ public class TestProjectProcessor extends AbstractProjectProcessor {
         return Optional.empty();
     }
 
-    private static class Move {
-        public String signature;
-        public String filePath;
-        public int lineFrom;
-        public int lineTo;
-        public String packageOrig;
-        public String className;
-        public String methodName;
-        public String packageMoved;
-
-        public Move(String signature, String filePath, int lineFrom, int lineTo, String packageOrig, String className, String methodName, String packageMoved) {
-            this.signature = signature;
-            this.filePath = filePath;
-            this.lineFrom = lineFrom;
-            this.lineTo = lineTo;
-            this.packageOrig = packageOrig;
-            this.className = className;
-            this.methodName = methodName;
-            this.packageMoved = packageMoved;
+    private static class TestRecord {
+        public int correctIndex;
+        public String packageNameEc;
+        public List<String> packageNamePtc;
+
+        public TestRecord(int correctIndex, String packageNameEc, List<String> packageNamePtc) {
+            this.correctIndex = correctIndex;
+            this.packageNameEc = packageNameEc;
+            this.packageNamePtc = packageNamePtc;
         }
     }
 }
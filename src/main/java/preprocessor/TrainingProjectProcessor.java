@@ -3,43 +3,65 @@ package preprocessor;
 import com.github.javaparser.JavaParser;
 import preprocessor.extractor.CandidatePackageCalculator;
 import preprocessor.extractor.DistanceCalculator;
+import preprocessor.extractor.DistanceMatrix;
 import preprocessor.extractor.ExtractorConfig;
+import preprocessor.extractor.FileFeature;
 import preprocessor.extractor.NameNormalizer;
 import preprocessor.extractor.entity.Method;
 
+import java.io.Closeable;
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.*;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 public class TrainingProjectProcessor extends AbstractProjectProcessor{
 
-    public TrainingProjectProcessor(File projectDir, Path outPath, JavaParser parser, ExtractorConfig cfg) {
-        super(projectDir, outPath, parser, cfg);
+    public TrainingProjectProcessor(File projectDir, Path outPath, Supplier<JavaParser> parserFactory, ExtractorConfig cfg) {
+        super(projectDir, outPath, parserFactory, cfg);
     }
 
     @Override
     public void process() throws Exception {
-        List<Path> targetPaths = listPaths();
+        List<Path> targetPaths;
         Set<String> allPackages = new HashSet<>();
-        for (Path path : targetPaths) {
-            path = projectDir.toPath().relativize(path);
-            String packageName = path.getParent().toString().replace("/", ".");
-            allPackages.add(packageName);
+        ProjectMetrics.PhaseTimer phase = metrics.phase("list");
+        try {
+            targetPaths = listPaths();
+            for (Path path : targetPaths) {
+                path = projectDir.toPath().relativize(path);
+                String packageName = path.getParent().toString().replace("/", ".");
+                allPackages.add(packageName);
+            }
+        } finally {
+            phase.stop();
         }
+        metrics.files = targetPaths.size();
+        metrics.packages = allPackages.size();
 
-        var candidatePackages = new CandidatePackageCalculator(parser, cfg).listCandidatePackages(targetPaths, allPackages);
-        var result = new DistanceCalculator(parser, allPackages, targetPaths).calcDistances();
+        // 各ファイルのパースは1度だけ行い、候補パッケージと距離の計算で共有する
+        List<FileFeature> fileFeatures = extractFeatures(targetPaths, allPackages);
+        Map<String, Set<String>> candidatePackages;
+        phase = metrics.phase("candidates");
+        try {
+            candidatePackages = new CandidatePackageCalculator(cfg).listCandidatePackages(fileFeatures, allPackages);
+        } finally {
+            phase.stop();
+        }
+        DistanceCalculator.DistanceCalculationResult result;
+        phase = metrics.phase("distances");
+        try {
+            result = new DistanceCalculator(allPackages).calcDistances(fileFeatures);
+        } finally {
+            phase.stop();
+        }
 
-        File namePath = outPath.resolve("train_Names.txt").toFile();
-        File distPath = outPath.resolve("train_Distances.txt").toFile();
-        try (
-                FileWriter nameWriter = new FileWriter(namePath);
-                FileWriter distWriter = new FileWriter(distPath);
-        ) {
+        DistanceMatrix distances = new DistanceMatrix(result.getPackages());
+        phase = metrics.phase("output");
+        try (RowWriter writer = cfg.vocabPath != null ? new TensorRowWriter() : new TextRowWriter()) {
             for (Method method : result.getMethods()) {
                 String packageNameEc = method.getPackageName();
                 if (!candidatePackages.containsKey(packageNameEc)) {
@@ -51,19 +73,107 @@ public class TrainingProjectProcessor extends AbstractProjectProcessor{
                     continue;
                 }
 
+                double distanceEc = distances.get(method, packageNameEc);
+                String methodName = method.asEntity().getName();
                 for (String packageNameTc : packageNamePtc) {
-                    double distanceEc = method.calcDistance(result.getPackages().get(packageNameEc));
-                    double distanceTc = method.calcDistance(result.getPackages().get(packageNameTc));
-                    String methodName = method.asEntity().getName();
-                    nameWriter.write(formatNames(methodName, packageNameEc, packageNameTc) + "\n");
-                    distWriter.write(formatDistances(distanceEc, distanceTc, 0) + "\n");
-                    nameWriter.write(formatNames(methodName, packageNameTc, packageNameEc) + "\n");
-                    distWriter.write(formatDistances(distanceTc, distanceEc, 1) + "\n");
+                    double distanceTc = distances.get(method, packageNameTc);
+                    writer.write(methodName, packageNameEc, packageNameTc, distanceEc, distanceTc, 0);
+                    writer.write(methodName, packageNameTc, packageNameEc, distanceTc, distanceEc, 1);
                 }
+                metrics.candidates += packageNamePtc.size();
+                metrics.linesWritten += 2L * packageNamePtc.size();
             }
+        } finally {
+            phase.stop();
+        }
+
+    }
+
+    private interface RowWriter extends Closeable {
+        void write(String methodName, String packageNameX, String packageNameY, double distanceX, double distanceY, int label)
+                throws IOException;
+    }
+
+    /**
+     * train_Names.txt と train_Distances.txt にスペース区切りのテキストで書き出す
+     */
+    private class TextRowWriter implements RowWriter {
+        private final OutputSink nameSink;
+        private final OutputSink distSink;
+        private final StringBuilder line = new StringBuilder();
+
+        private TextRowWriter() throws IOException {
+            this.nameSink = OutputSink.open(outPath.resolve("train_Names.txt"), cfg.asyncOutput);
+            this.distSink = OutputSink.open(outPath.resolve("train_Distances.txt"), cfg.asyncOutput);
         }
 
+        @Override
+        public void write(String methodName, String packageNameX, String packageNameY, double distanceX, double distanceY, int label)
+                throws IOException {
+            writeLine(nameSink, line, methodName, packageNameX, packageNameY);
+            writeLine(distSink, line, distanceX, distanceY, label);
+        }
+
+        @Override
+        public void close() throws IOException {
+            try (nameSink; distSink) {
+                // 両方を閉じる
+            }
+        }
+    }
+
+    /**
+     * 単語を語彙の ID に変換し、train_Names.npy (int32)・train_Distances.npy (float32)・train_Labels.npy (int32) に書き出す
+     */
+    private class TensorRowWriter implements RowWriter {
+        private final Vocabulary vocabulary;
+        private final NpyWriter names;
+        private final NpyWriter dists;
+        private final NpyWriter labels;
+        private final List<String> tokens = new ArrayList<>();
+
+        private TensorRowWriter() throws IOException {
+            this.vocabulary = cfg.vocabulary();
+            this.names = NpyWriter.int32(outPath.resolve("train_Names.npy"), nameTokenLength());
+            this.dists = NpyWriter.float32(outPath.resolve("train_Distances.npy"), 2);
+            this.labels = NpyWriter.int32(outPath.resolve("train_Labels.npy"), 1);
+        }
+
+        @Override
+        public void write(String methodName, String packageNameX, String packageNameY, double distanceX, double distanceY, int label)
+                throws IOException {
+            tokens.clear();
+            addNameTokens(tokens, methodName, packageNameX, packageNameY);
+            for (String token : tokens) {
+                names.writeInt(vocabulary.idOf(token));
+            }
+            dists.writeFloat((float) distanceX);
+            dists.writeFloat((float) distanceY);
+            labels.writeInt(label);
+        }
+
+        @Override
+        public void close() throws IOException {
+            try (names; dists; labels) {
+                // すべて閉じてヘッダの行数を確定させる
+            }
+        }
+    }
+
+    private void writeLine(OutputSink sink, StringBuilder line, String methodName, String packageNameX, String packageNameY)
+            throws IOException {
+        line.setLength(0);
+        appendNames(line, methodName, packageNameX, packageNameY);
+        line.append('\n');
+        sink.write(line);
+    }
 
+    private void writeLine(OutputSink sink, StringBuilder line, double distanceX, double distanceY, int label)
+            throws IOException {
+        line.setLength(0);
+        appendDistances(line, distanceX, distanceY, label);
+        line.append('\n');
+        sink.write(line);
     }
 
 }
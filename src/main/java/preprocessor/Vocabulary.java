@@ -0,0 +1,51 @@
+package preprocessor;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 学習側 (train.py, test.py) と同じ規則で単語に ID を振る。
+ * 語彙ファイル (word2vecNocopy.200d.txt など) の i 行目の単語が ID i になり、その後に "*" と "<unk>" が続く
+ */
+public class Vocabulary {
+    public static final String PADDING = "*";
+    public static final String UNKNOWN = "<unk>";
+
+    private final Map<String, Integer> ids = new HashMap<>();
+
+    public static Vocabulary load(Path path) throws IOException {
+        Vocabulary vocabulary = new Vocabulary();
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line;
+            int i = 0;
+            while ((line = reader.readLine()) != null) {
+                // 先頭の単語だけを使い、ベクトルは読み飛ばす
+                String stripped = line.strip();
+                int end = 0;
+                while (end < stripped.length() && !Character.isWhitespace(stripped.charAt(end))) {
+                    end++;
+                }
+                vocabulary.ids.put(stripped.substring(0, end), i);
+                i++;
+            }
+        }
+        vocabulary.ids.put(PADDING, vocabulary.ids.size());
+        vocabulary.ids.put(UNKNOWN, vocabulary.ids.size());
+        return vocabulary;
+    }
+
+    public int idOf(String word) {
+        // 未知語は最後の ID (<unk>) にする
+        Integer id = ids.get(word);
+        return id != null ? id : ids.size() - 1;
+    }
+
+    public int size() {
+        return ids.size();
+    }
+}
@@ -0,0 +1,94 @@
+package preprocessor.extractor;
+
+import com.github.javaparser.ParserConfiguration;
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.Node;
+import com.github.javaparser.resolution.declarations.AssociableToAST;
+import com.github.javaparser.resolution.declarations.ResolvedReferenceTypeDeclaration;
+import com.github.javaparser.symbolsolver.model.resolution.SymbolReference;
+import com.github.javaparser.symbolsolver.model.resolution.TypeSolver;
+import com.github.javaparser.symbolsolver.resolution.typesolvers.JavaParserTypeSolver;
+
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * プロジェクトのソースから型を探す TypeSolver に、保持するパース結果の上限を設けたもの。
+ * JavaParserTypeSolver 内部のキャッシュを上限付きにし、その上に解決結果の LRU を置く。
+ * 追い出された型は再度パースされるので、ヒープと再パースのコストの兼ね合いで上限を決める
+ */
+public class BoundedTypeSolver implements TypeSolver {
+    private final TypeSolver delegate;
+    private final Map<String, SymbolReference<ResolvedReferenceTypeDeclaration>> resolved;
+    private TypeSolver parent;
+    private long hits = 0;
+    private long misses = 0;
+
+    public BoundedTypeSolver(Path srcDir, int maxEntries) {
+        this.delegate = new JavaParserTypeSolver(srcDir, new ParserConfiguration(), maxEntries);
+        this.delegate.setParent(this);
+        this.resolved = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, SymbolReference<ResolvedReferenceTypeDeclaration>> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    @Override
+    public TypeSolver getParent() {
+        return parent;
+    }
+
+    @Override
+    public void setParent(TypeSolver parent) {
+        this.parent = parent;
+    }
+
+    @Override
+    public SymbolReference<ResolvedReferenceTypeDeclaration> tryToSolveType(String name) {
+        SymbolReference<ResolvedReferenceTypeDeclaration> ref = resolved.get(name);
+        if (ref != null) {
+            hits++;
+            return ref;
+        }
+        misses++;
+        ref = delegate.tryToSolveType(name);
+        resolved.put(name, ref);
+        return ref;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    /**
+     * LRU に残っている型の数
+     */
+    public int residentTypes() {
+        return resolved.size();
+    }
+
+    /**
+     * LRU に残っている型が参照しているパース結果 (CompilationUnit) の数
+     */
+    public int residentCompilationUnits() {
+        Set<CompilationUnit> units = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (SymbolReference<ResolvedReferenceTypeDeclaration> ref : resolved.values()) {
+            if (ref.isSolved() && ref.getCorrespondingDeclaration() instanceof AssociableToAST) {
+                ((AssociableToAST<?>) ref.getCorrespondingDeclaration()).toAst()
+                        .flatMap(Node::findCompilationUnit)
+                        .ifPresent(units::add);
+            }
+        }
+        return units.size();
+    }
+}
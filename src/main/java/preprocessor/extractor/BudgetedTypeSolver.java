@@ -0,0 +1,35 @@
+package preprocessor.extractor;
+
+import com.github.javaparser.resolution.declarations.ResolvedReferenceTypeDeclaration;
+import com.github.javaparser.symbolsolver.model.resolution.SymbolReference;
+import com.github.javaparser.symbolsolver.model.resolution.TypeSolver;
+
+/**
+ * 型を探すたびに ResolutionBudget の残り時間を確かめる TypeSolver。
+ * 子の TypeSolver からの問い合わせもここを通るよう、ルートとして使う
+ */
+public class BudgetedTypeSolver implements TypeSolver {
+    private final TypeSolver delegate;
+    private TypeSolver parent;
+
+    public BudgetedTypeSolver(TypeSolver delegate) {
+        this.delegate = delegate;
+        delegate.setParent(this);
+    }
+
+    @Override
+    public TypeSolver getParent() {
+        return parent;
+    }
+
+    @Override
+    public void setParent(TypeSolver parent) {
+        this.parent = parent;
+    }
+
+    @Override
+    public SymbolReference<ResolvedReferenceTypeDeclaration> tryToSolveType(String name) {
+        ResolutionBudget.checkpoint();
+        return delegate.tryToSolveType(name);
+    }
+}
@@ -1,31 +1,25 @@
 package preprocessor.extractor;
 
-import com.github.javaparser.JavaParser;
 import com.google.common.collect.Sets;
 import org.apache.commons.lang3.tuple.Pair;
 
-import java.io.IOException;
-import java.nio.file.Path;
 import java.util.*;
 import java.util.stream.Collectors;
 
 public class CandidatePackageCalculator {
-    private final JavaParser parser;
     private final ExtractorConfig cfg;
 
-    public CandidatePackageCalculator(JavaParser parser, ExtractorConfig cfg) {
-        this.parser = parser;
+    public CandidatePackageCalculator(ExtractorConfig cfg) {
         this.cfg = cfg;
     }
 
-    public Map<String, Set<String>> listCandidatePackages(List<Path> targetPaths, Set<String> allPackages) {
-        // 1ファイルずつ処理していく
+    public Map<String, Set<String>> listCandidatePackages(List<FileFeature> fileFeatures, Set<String> allPackages) {
+        // ファイルごとの feature をパッケージ単位にまとめる
         Map<String, Set<String>> imports = new HashMap<>();
         Map<String, Set<String>> packageCalls = new HashMap<>();
-        Map<String, Integer> count = new HashMap<>();
-        for (Path path : targetPaths) {
-            FileFeature fileFeature = processFile(path, count);
-            if (fileFeature == null) {
+        for (FileFeature fileFeature : fileFeatures) {
+            if (!allPackages.contains(fileFeature.getPackageName())) {
+                // package 宣言がディレクトリ構成と一致しないファイルは対象外とする (DistanceCalculator と同じ)
                 continue;
             }
             imports.computeIfAbsent(fileFeature.getPackageName(), k -> new HashSet<>())
@@ -46,9 +40,10 @@ public class CandidatePackageCalculator {
         // import 宣言はプロジェクト内のクラスをそのパッケージに変換し、ライブラリはそのままにする
         Map<String, Set<String>> newImports = allPackages.stream()
                 .collect(Collectors.toMap(p -> p, p -> new HashSet<>()));
+        PackageTrie packageTrie = new PackageTrie(allPackages);
         for (var en : imports.entrySet()) {
             for (String importPackage : en.getValue()) {
-                var result = getCorrespondingPackage(importPackage, allPackages);
+                var result = getCorrespondingPackage(importPackage, packageTrie);
                 // プロジェクト内の package の import があれば候補に追加する
                 if (result.getLeft()) {
                     interPackageConnection.add(Pair.of(result.getRight(), en.getKey()));
@@ -68,56 +63,33 @@ public class CandidatePackageCalculator {
         }
 
         // 同一パッケージ・クラスのインポートがあるパッケージを候補に加える
-        for (String target : allPackages) {
-            for (String candidate : allPackages) {
-                var intersection = Sets.intersection(
-                        newImports.get(target), newImports.get(candidate));
-                if (!intersection.isEmpty()) {
-                    candidatePackages.get(target).add(candidate);
-                    candidatePackages.get(candidate).add(target);
-                }
-            }
-        }
+        addImportSharingPackages(newImports, candidatePackages);
 
         return candidatePackages;
     }
 
-    private Pair<Boolean, String> getCorrespondingPackage(String importPackage, Set<String> allPackages) {
-        String[] target = importPackage.split("\\.");
-        int max_i = 0;
-        String max_package = null;
-        for (String p : allPackages) {
-            String[] projectPackage = p.split("\\.");
-            for (int i = 0; i < projectPackage.length; i++) {
-                if (target.length <= i || !projectPackage[i].equals(target[i])) {
-                    break;
-                }
-                if (i > max_i) {
-                    max_i = i;
-                    max_package = p;
-                }
+    static void addImportSharingPackages(Map<String, Set<String>> newImports, Map<String, Set<String>> candidatePackages) {
+        // import -> それを import しているパッケージ の転置インデックスを作り、
+        // 全パッケージの組について積集合を取る代わりに、同じ import を持つパッケージ同士を候補にする
+        Map<String, List<String>> importingPackages = new HashMap<>();
+        for (var en : newImports.entrySet()) {
+            for (String importPackage : en.getValue()) {
+                importingPackages.computeIfAbsent(importPackage, k -> new ArrayList<>()).add(en.getKey());
             }
         }
-        boolean matched = max_i > 0;
-        String result = matched ? max_package : importPackage;
-        return Pair.of(matched, result);
-    }
-
-    private FileFeature processFile(Path path, Map<String, Integer> count) {
-        // ASTを走査してfeatureを抽出
-        ExtractFeaturesTask extractFeaturesTask = new ExtractFeaturesTask(cfg, path, parser);
-        FileFeature fileFeature;
-        try {
-            fileFeature = extractFeaturesTask.processFile();
-        } catch (Exception | StackOverflowError e) {  // 型の解決時にStackOverflowになることがある
-//                            logger.warning("failed to extract file: " + path);
-            return null;
-        }
-        if (fileFeature == null) {
-            return null;
+        for (List<String> packages : importingPackages.values()) {
+            for (String p : packages) {
+                candidatePackages.get(p).addAll(packages);
+            }
         }
+    }
 
-        return fileFeature;
+    static Pair<Boolean, String> getCorrespondingPackage(String importPackage, PackageTrie packageTrie) {
+        // 先頭から2セグメント以上一致するプロジェクト内のパッケージがあれば、最も長く一致するものに対応づける
+        String matchedPackage = packageTrie.findLongestMatch(importPackage);
+        boolean matched = matchedPackage != null;
+        String result = matched ? matchedPackage : importPackage;
+        return Pair.of(matched, result);
     }
 
 }
@@ -0,0 +1,30 @@
+package preprocessor.extractor;
+
+import preprocessor.extractor.entity.Method;
+import preprocessor.extractor.entity.Package;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * メソッドとパッケージの距離を、実際に問い合わせのあった組についてのみ1度だけ計算する。
+ * 出力はメソッドごとにまとめて問い合わせるので、保持するのは直近のメソッドの分だけにし、
+ * 別のメソッドの問い合わせが来た時点で捨てる (全メソッド分を持つと メソッド数 × 候補数 のメモリを使う)
+ */
+public class DistanceMatrix {
+    private final Map<String, Package> packages;
+    private final Map<String, Double> distances = new HashMap<>();
+    private Method current;
+
+    public DistanceMatrix(Map<String, Package> packages) {
+        this.packages = packages;
+    }
+
+    public double get(Method method, String packageName) {
+        if (method != current) {
+            distances.clear();
+            current = method;
+        }
+        return distances.computeIfAbsent(packageName, p -> method.calcDistance(packages.get(p)));
+    }
+}
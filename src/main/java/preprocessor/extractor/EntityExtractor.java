@@ -0,0 +1,126 @@
+package preprocessor.extractor;
+
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.Node;
+import com.github.javaparser.ast.body.FieldDeclaration;
+import com.github.javaparser.ast.body.MethodDeclaration;
+import com.github.javaparser.ast.body.VariableDeclarator;
+import com.github.javaparser.ast.expr.*;
+import com.github.javaparser.ast.stmt.BlockStmt;
+import com.github.javaparser.ast.stmt.ExpressionStmt;
+import com.github.javaparser.ast.stmt.ReturnStmt;
+import preprocessor.extractor.entity.Entity;
+import preprocessor.extractor.entity.Method;
+import preprocessor.extractor.visitor.EntityCallCollectorVisitor;
+import preprocessor.extractor.visitor.MethodCollectorVisitor;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+public class EntityExtractor {
+    private final ResolutionCache resolutionCache;
+
+    public EntityExtractor() {
+        this(null);
+    }
+
+    public EntityExtractor(ResolutionCache resolutionCache) {
+        this.resolutionCache = resolutionCache;
+    }
+
+    public FileEntities extractEntities(Path path, String packageName, CompilationUnit cu) {
+        List<MethodDeclaration> methodDecls = collectMethods(cu);
+
+        // パッケージに属するエンティティ (フィールド・メソッド) を集める
+        List<Entity> entities = new ArrayList<>();
+        for (FieldDeclaration field : cu.findAll(FieldDeclaration.class)) {
+            for (VariableDeclarator varDecl : field.getVariables()) {
+                entities.add(Entity.field(packageName, varDecl));
+            }
+        }
+        for (MethodDeclaration methodDecl : methodDecls) {
+            entities.add(Entity.method(packageName, methodDecl));
+        }
+
+        // 距離計測の対象となるメソッドと、その呼び出し先エンティティを集める
+        List<Method> methods = new ArrayList<>();
+        int boilerplateMethods = 0;
+        for (MethodDeclaration methodDecl : methodDecls) {
+            if (isBoilerPlate(methodDecl)) {
+                boilerplateMethods++;
+                continue;
+            }
+            Method method = new Method(path, packageName, methodDecl);
+            method.addEntities(collectCallingEntities(methodDecl));
+            methods.add(method);
+        }
+
+        return new FileEntities(entities, methods, boilerplateMethods);
+    }
+
+    private List<MethodDeclaration> collectMethods(CompilationUnit cu) {
+        var methodCollector = new MethodCollectorVisitor();
+        methodCollector.visit(cu, null);
+        return methodCollector.getMethods();
+    }
+
+    private Set<Entity> collectCallingEntities(MethodDeclaration method) {
+        var visitor = new EntityCallCollectorVisitor(resolutionCache);
+        visitor.visit(method, null);
+        return visitor.getEntityCalls();
+    }
+
+    private boolean isBoilerPlate(MethodDeclaration m) {
+        // TODO constructor?
+        if (m.getNameAsString().equals("toString")
+                || m.getNameAsString().equals("hashCode")
+                || m.getNameAsString().equals("equals")) {
+            return true;
+        }
+        if (m.getNameAsString().startsWith("get") || m.getNameAsString().startsWith("is")) {
+            for (Node node : m.getChildNodes()) {
+                if (node instanceof BlockStmt) {
+                    BlockStmt block = (BlockStmt) node;
+                    if (block.getStatements().size() == 1
+                            && block.getStatements().get(0) instanceof ReturnStmt) {
+                        Expression expr = ((ReturnStmt) block.getStatements().get(0)).getExpression().orElse(null);
+                        if (expr instanceof FieldAccessExpr || expr instanceof NameExpr) {
+                            return true;
+                        }
+                    }
+                }
+            }
+        }
+        if (m.getNameAsString().startsWith("set")) {
+            for (Node node : m.getChildNodes()) {
+                if (node instanceof BlockStmt) {
+                    BlockStmt block = (BlockStmt) node;
+                    if (block.getStatements().size() == 1
+                            && block.getStatements().get(0) instanceof ExpressionStmt
+                            && ((ExpressionStmt) block.getStatements().get(0)).getExpression() instanceof AssignExpr) {
+                        AssignExpr assign = (AssignExpr) ((ExpressionStmt) block.getStatements().get(0)).getExpression();
+                        if (assign.getTarget() instanceof FieldAccessExpr) {
+                            return true;
+                        }
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    public static class FileEntities {
+        public List<Entity> entities;
+        public List<Method> methods;
+        // getter・setter などとして methods から除いたメソッドの数
+        public int boilerplateMethods;
+
+        private FileEntities(List<Entity> entities, List<Method> methods, int boilerplateMethods) {
+            this.entities = entities;
+            this.methods = methods;
+            this.boilerplateMethods = boilerplateMethods;
+        }
+    }
+}
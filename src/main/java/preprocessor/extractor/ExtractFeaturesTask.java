@@ -1,27 +1,45 @@
 package preprocessor.extractor;
 
 import com.github.javaparser.JavaParser;
+import com.github.javaparser.ParseProblemException;
+import com.github.javaparser.ast.CompilationUnit;
 
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Optional;
 import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
 
-public class ExtractFeaturesTask implements Callable<Void> {
+/**
+ * 1ファイルを1度だけパースし、候補パッケージの計算と距離の計算に必要な feature をまとめて抽出する
+ */
+public class ExtractFeaturesTask implements Callable<FileFeature> {
     private final ExtractorConfig cfg;
     private final Path filePath;
     private final JavaParser parser;
+    private final FeatureCache cache;
+    private final ResolutionCache resolutionCache;
+    private final ExtractionStats stats;
 
     public ExtractFeaturesTask(ExtractorConfig cfg, Path path, JavaParser parser) {
+        this(cfg, path, parser, null, null, new ExtractionStats());
+    }
+
+    public ExtractFeaturesTask(ExtractorConfig cfg, Path path, JavaParser parser, FeatureCache cache,
+                               ResolutionCache resolutionCache, ExtractionStats stats) {
         this.cfg = cfg;
         this.filePath = path;
         this.parser = parser;
+        this.cache = cache;
+        this.resolutionCache = resolutionCache;
+        this.stats = stats;
     }
 
     @Override
-    public Void call() {
-        processFile();
-        return null;
+    public FileFeature call() {
+        return processFile();
     }
 
     public FileFeature processFile() {
@@ -35,14 +53,91 @@ public class ExtractFeaturesTask implements Callable<Void> {
     }
 
     private FileFeature extractSingleFile() throws IOException {
-        String code;
-        code = new String(Files.readAllBytes(filePath));
-        var packageCallExtractor = new PackageCallExtractor(parser);
-        var p = packageCallExtractor.extractPackageCall(code);
-        if (p.isEmpty()) {
+        ResolveEvent.setCurrentFile(filePath.toString());
+        try {
+            return extractSingleFile(Files.readAllBytes(filePath));
+        } finally {
+            ResolveEvent.clearCurrentFile();
+        }
+    }
+
+    private FileFeature extractSingleFile(byte[] bytes) {
+        if (cache == null) {
+            return extractSingleFile(new String(bytes));
+        }
+
+        // 内容が変わっていなければ、パースと型の解決を行わずにキャッシュした結果を使う
+        String key = cache.key(bytes);
+        FileFeature cached = cache.load(key, filePath);
+        if (cached != null) {
+            stats.addFromCache();
+            return cached.getPackageName() != null ? cached : null;
+        }
+        FileFeature features = extractSingleFile(new String(bytes));
+        if (features != null && features.isDegraded()) {
+            // 予算切れの結果は実行ごとに変わりうるのでキャッシュしない
+            return features;
+        }
+        cache.store(key, features != null ? features : FileFeature.empty());
+        return features;
+    }
+
+    private FileFeature extractSingleFile(String code) {
+        CompilationUnit cu = parse(code);
+        if (cu == null) {
+            stats.addParseFailure();
+            return null;
+        }
+        stats.addParsed();
+        if (cu.getPackageDeclaration().isEmpty()) {
             return null;
         }
-        return new FileFeature(p.get().packageName, p.get().imports, p.get().packageCallTo);
+        String packageName = cu.getPackageDeclaration().get().getNameAsString();
+
+        // 型の解決に時間のかかるファイルで全体が止まらないよう、解決にかける時間を制限する
+        try (ResolutionBudget budget = ResolutionBudget.start(
+                TimeUnit.MILLISECONDS.toNanos(cfg.expressionResolveBudgetMillis),
+                TimeUnit.MILLISECONDS.toNanos(cfg.fileResolveBudgetMillis))) {
+            // 型の解決時にStackOverflowになることがあるが、その場合も距離計算用のエンティティは抽出する
+            Optional<PackageCallExtractor.PackageCall> p;
+            try {
+                p = new PackageCallExtractor(parser).extractPackageCall(cu);
+            } catch (Exception | StackOverflowError e) {
+                ResolutionBudget.recordFailure(e);
+                p = Optional.empty();
+            }
+
+            var entities = new EntityExtractor(resolutionCache).extractEntities(filePath, packageName, cu);
+            stats.addMethods(entities.methods.size(), entities.boilerplateMethods);
+            stats.addResolution(budget);
+            return new FileFeature(
+                    packageName,
+                    p.map(pc -> pc.imports).orElse(Collections.emptySet()),
+                    p.map(pc -> pc.packageCallTo).orElse(Collections.emptySet()),
+                    entities.entities,
+                    entities.methods,
+                    budget.isDegraded()
+            );
+        }
+    }
+
+    private CompilationUnit parse(String code) {
+        ParseEvent event = new ParseEvent();
+        event.begin();
+        CompilationUnit cu;
+        try {
+            cu = parser.parse(code).getResult().orElse(null);
+        } catch (ParseProblemException e) {
+            cu = null;
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.file = filePath.toString();
+            event.characters = code.length();
+            event.succeeded = cu != null;
+            event.commit();
+        }
+        return cu;
     }
 
 }
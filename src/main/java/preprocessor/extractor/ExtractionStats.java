@@ -0,0 +1,126 @@
+package preprocessor.extractor;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 1プロジェクトの feature 抽出で数えた件数。--extract_threads で複数のスレッドから加算される
+ */
+public class ExtractionStats {
+    private final LongAdder filesParsed = new LongAdder();
+    private final LongAdder filesFromCache = new LongAdder();
+    private final LongAdder parseFailures = new LongAdder();
+    // パース後の抽出で例外になり、結果に含められなかったファイル
+    private final LongAdder failedFiles = new LongAdder();
+    private final LongAdder degradedFiles = new LongAdder();
+    private final LongAdder resolutionFailures = new LongAdder();
+    private final LongAdder stackOverflows = new LongAdder();
+    private final LongAdder skippedExpressions = new LongAdder();
+    private final LongAdder methods = new LongAdder();
+    private final LongAdder boilerplateMethods = new LongAdder();
+    // 抽出を行ったスレッドの CPU 時間の合計
+    private final LongAdder cpuNanos = new LongAdder();
+    // --resolution_cache の問い合わせ数とヒット数、抽出の終了時のエントリ数
+    private final LongAdder resolutionCacheLookups = new LongAdder();
+    private final LongAdder resolutionCacheHits = new LongAdder();
+    private final LongAdder resolutionCacheEntries = new LongAdder();
+
+    void addParsed() {
+        filesParsed.increment();
+    }
+
+    void addFromCache() {
+        filesFromCache.increment();
+    }
+
+    void addParseFailure() {
+        parseFailures.increment();
+    }
+
+    void addFailedFile(Throwable e) {
+        failedFiles.increment();
+        if (e instanceof StackOverflowError) {
+            stackOverflows.increment();
+        }
+    }
+
+    void addDegraded(long count) {
+        degradedFiles.add(count);
+    }
+
+    void addResolution(ResolutionBudget budget) {
+        resolutionFailures.add(budget.getResolutionFailures());
+        stackOverflows.add(budget.getStackOverflows());
+        skippedExpressions.add(budget.getSkippedExpressions());
+    }
+
+    void addMethods(int extracted, int boilerplate) {
+        methods.add(extracted);
+        boilerplateMethods.add(boilerplate);
+    }
+
+    void addCpuNanos(long nanos) {
+        cpuNanos.add(nanos);
+    }
+
+    void addResolutionCache(ResolutionCache cache) {
+        resolutionCacheHits.add(cache.getHits());
+        resolutionCacheLookups.add(cache.getHits() + cache.getMisses());
+        resolutionCacheEntries.add(cache.size());
+    }
+
+    public long getFilesParsed() {
+        return filesParsed.sum();
+    }
+
+    public long getFilesFromCache() {
+        return filesFromCache.sum();
+    }
+
+    public long getParseFailures() {
+        return parseFailures.sum();
+    }
+
+    public long getFailedFiles() {
+        return failedFiles.sum();
+    }
+
+    public long getDegradedFiles() {
+        return degradedFiles.sum();
+    }
+
+    public long getResolutionFailures() {
+        return resolutionFailures.sum();
+    }
+
+    public long getStackOverflows() {
+        return stackOverflows.sum();
+    }
+
+    public long getSkippedExpressions() {
+        return skippedExpressions.sum();
+    }
+
+    public long getMethods() {
+        return methods.sum();
+    }
+
+    public long getBoilerplateMethods() {
+        return boilerplateMethods.sum();
+    }
+
+    public long getCpuNanos() {
+        return cpuNanos.sum();
+    }
+
+    public long getResolutionCacheLookups() {
+        return resolutionCacheLookups.sum();
+    }
+
+    public long getResolutionCacheHits() {
+        return resolutionCacheHits.sum();
+    }
+
+    public long getResolutionCacheEntries() {
+        return resolutionCacheEntries.sum();
+    }
+}
@@ -1,6 +1,12 @@
 package preprocessor.extractor;
 
 import preprocessor.CommandLineValues;
+import preprocessor.MoveOracle;
+import preprocessor.Vocabulary;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 
 
 public class ExtractorConfig {
@@ -10,6 +16,17 @@ public class ExtractorConfig {
     public int maxCodeLength = -1;
     public int maxChildId = 3;
     public boolean excludeBoilerplates;
+    public int extractThreads = 1;
+    public Path cacheDir;
+    public boolean asyncOutput;
+    public boolean packedTestOutput;
+    public Path vocabPath;
+    public Path moveJsonPath = Paths.get("move.json");
+    public long expressionResolveBudgetMillis = 0;
+    public long fileResolveBudgetMillis = 0;
+    public boolean resolutionCache;
+    public int typeSolverCacheSize = -1;
+    public Path jfrDir;
 
     public int methodNameLength = 5;
     public int packageNameLength = 5;
@@ -22,6 +39,40 @@ public class ExtractorConfig {
         cfg.maxCodeLength = args.maxCodeLength;
         cfg.maxChildId = args.maxChildId;
         cfg.excludeBoilerplates = args.excludeBoilerplates;
+        cfg.extractThreads = args.extractThreads;
+        cfg.cacheDir = args.cacheDir;
+        cfg.asyncOutput = args.asyncOutput;
+        cfg.packedTestOutput = args.packedTestOutput;
+        cfg.vocabPath = args.vocabPath;
+        cfg.moveJsonPath = args.moveJsonPath;
+        cfg.expressionResolveBudgetMillis = args.expressionResolveBudgetMillis;
+        cfg.fileResolveBudgetMillis = args.fileResolveBudgetMillis;
+        cfg.resolutionCache = args.resolutionCache;
+        cfg.typeSolverCacheSize = args.typeSolverCacheSize;
+        cfg.jfrDir = args.jfrDir;
         return cfg;
     }
-}
\ No newline at end of file
+
+    private Vocabulary vocabulary;
+    private MoveOracle moveOracle;
+
+    /**
+     * 語彙ファイルは大きいので、同じ設定を使うプロジェクト間で1度だけ読み込む
+     */
+    public synchronized Vocabulary vocabulary() throws IOException {
+        if (vocabulary == null) {
+            vocabulary = Vocabulary.load(vocabPath);
+        }
+        return vocabulary;
+    }
+
+    /**
+     * move.json はテスト用プロジェクトの間で共有し、1度だけ読み込む
+     */
+    public synchronized MoveOracle moveOracle() throws IOException {
+        if (moveOracle == null) {
+            moveOracle = MoveOracle.load(moveJsonPath);
+        }
+        return moveOracle;
+    }
+}
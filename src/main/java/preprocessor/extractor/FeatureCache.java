@@ -0,0 +1,249 @@
+package preprocessor.extractor;
+
+import preprocessor.extractor.entity.Entity;
+import preprocessor.extractor.entity.Method;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * ファイルごとの抽出結果 (FileFeature) をディスクにキャッシュする。
+ * 型の解決結果は同じプロジェクトの他のファイルにも依存するため、キーはファイルの内容に加えて
+ * 抽出処理のバージョンとプロジェクト全体のソースのハッシュから作る
+ */
+public class FeatureCache {
+    // 抽出処理の結果が変わる変更を入れた場合は上げること
+    private static final int EXTRACTOR_VERSION = 1;
+    private static final int MAGIC = 0x46454154;
+
+    private final Path cacheDir;
+    private final byte[] projectFingerprint;
+
+    private FeatureCache(Path cacheDir, byte[] projectFingerprint) {
+        this.cacheDir = cacheDir;
+        this.projectFingerprint = projectFingerprint;
+    }
+
+    public static FeatureCache open(Path cacheDir, Path projectDir) throws IOException {
+        Files.createDirectories(cacheDir);
+        return new FeatureCache(cacheDir, fingerprint(projectDir));
+    }
+
+    private static byte[] fingerprint(Path projectDir) throws IOException {
+        // TypeSolver が参照しうるプロジェクト内の全ソースを対象にする
+        List<Path> sources;
+        try (Stream<Path> paths = Files.walk(projectDir)) {
+            sources = paths.filter(path -> path.toString().endsWith(".java"))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+        MessageDigest digest = newDigest();
+        for (Path source : sources) {
+            digest.update(projectDir.relativize(source).toString().getBytes(StandardCharsets.UTF_8));
+            digest.update(newDigest().digest(Files.readAllBytes(source)));
+        }
+        return digest.digest();
+    }
+
+    public String key(byte[] code) {
+        MessageDigest digest = newDigest();
+        digest.update(Integer.toString(EXTRACTOR_VERSION).getBytes(StandardCharsets.UTF_8));
+        digest.update(projectFingerprint);
+        digest.update(code);
+        StringBuilder sb = new StringBuilder();
+        for (byte b : digest.digest()) {
+            sb.append(String.format("%02x", b));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * キャッシュされた抽出結果を読み込む。
+     * ファイルが抽出対象外だったことがキャッシュされている場合は FileFeature.empty() を、キャッシュがない場合は null を返す
+     */
+    public FileFeature load(String key, Path filePath) {
+        Path entry = entryPath(key);
+        if (!Files.exists(entry)) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(entry)))) {
+            if (in.readInt() != MAGIC) {
+                return null;
+            }
+            return read(in, filePath);
+        } catch (IOException e) {
+            // 壊れたエントリはキャッシュがないものとして扱う
+            return null;
+        }
+    }
+
+    public void store(String key, FileFeature fileFeature) {
+        Path entry = entryPath(key);
+        Path tmp = null;
+        try {
+            Files.createDirectories(entry.getParent());
+            tmp = Files.createTempFile(entry.getParent(), key, ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                out.writeInt(MAGIC);
+                write(out, fileFeature);
+            }
+            // 他のスレッド・プロセスが読み書き途中のエントリを見ないよう、書き終えてから置き換える
+            Files.move(tmp, entry, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            // キャッシュに書けなくても抽出結果には影響しない
+            if (tmp != null) {
+                tmp.toFile().delete();
+            }
+        }
+    }
+
+    private Path entryPath(String key) {
+        return cacheDir.resolve(key.substring(0, 2)).resolve(key + ".bin");
+    }
+
+    private static void write(DataOutputStream out, FileFeature fileFeature) throws IOException {
+        if (fileFeature.getPackageName() == null) {
+            out.writeBoolean(false);
+            return;
+        }
+        out.writeBoolean(true);
+
+        // パッケージ名などは何度も現れるので、文字列表を作ってインデックスで参照する
+        Map<String, Integer> strings = new LinkedHashMap<>();
+        strings.put(fileFeature.getPackageName(), 0);
+        fileFeature.getImports().forEach(s -> strings.putIfAbsent(s, strings.size()));
+        fileFeature.getCallToPackages().forEach(s -> strings.putIfAbsent(s, strings.size()));
+        for (Entity entity : fileFeature.getEntities()) {
+            addStrings(strings, entity);
+        }
+        for (Method method : fileFeature.getMethods()) {
+            addStrings(strings, method.asEntity());
+            for (Entity entity : method.getEntities()) {
+                addStrings(strings, entity);
+            }
+        }
+        out.writeInt(strings.size());
+        for (String s : strings.keySet()) {
+            out.writeUTF(s);
+        }
+
+        writeStrings(out, strings, fileFeature.getImports());
+        writeStrings(out, strings, fileFeature.getCallToPackages());
+        writeEntities(out, strings, fileFeature.getEntities());
+        out.writeInt(fileFeature.getMethods().size());
+        for (Method method : fileFeature.getMethods()) {
+            writeEntity(out, strings, method.asEntity());
+            out.writeInt(method.getLineFrom());
+            out.writeInt(method.getLineTo());
+            writeEntities(out, strings, method.getEntities());
+        }
+    }
+
+    private static FileFeature read(DataInputStream in, Path filePath) throws IOException {
+        if (!in.readBoolean()) {
+            return FileFeature.empty();
+        }
+
+        String[] strings = new String[in.readInt()];
+        for (int i = 0; i < strings.length; i++) {
+            strings[i] = in.readUTF();
+        }
+        String packageName = strings[0];
+
+        Set<String> imports = readStrings(in, strings);
+        Set<String> callToPackages = readStrings(in, strings);
+        List<Entity> entities = readEntities(in, strings);
+        int methodCount = in.readInt();
+        List<Method> methods = new ArrayList<>(methodCount);
+        for (int i = 0; i < methodCount; i++) {
+            Entity entity = readEntity(in, strings);
+            int lineFrom = in.readInt();
+            int lineTo = in.readInt();
+            Method method = new Method(filePath, packageName, entity, lineFrom, lineTo);
+            method.addEntities(readEntities(in, strings));
+            methods.add(method);
+        }
+        return new FileFeature(packageName, imports, callToPackages, entities, methods);
+    }
+
+    private static void addStrings(Map<String, Integer> strings, Entity entity) {
+        for (String s : Arrays.asList(entity.getPackageName(), entity.getJavaType(), entity.getName(), entity.getSignature())) {
+            if (s != null) {
+                strings.putIfAbsent(s, strings.size());
+            }
+        }
+    }
+
+    private static void writeStrings(DataOutputStream out, Map<String, Integer> strings, Collection<String> values) throws IOException {
+        out.writeInt(values.size());
+        for (String value : values) {
+            out.writeInt(strings.get(value));
+        }
+    }
+
+    private static Set<String> readStrings(DataInputStream in, String[] strings) throws IOException {
+        int size = in.readInt();
+        Set<String> values = new HashSet<>();
+        for (int i = 0; i < size; i++) {
+            values.add(strings[in.readInt()]);
+        }
+        return values;
+    }
+
+    private static void writeEntities(DataOutputStream out, Map<String, Integer> strings, Collection<Entity> entities) throws IOException {
+        out.writeInt(entities.size());
+        for (Entity entity : entities) {
+            writeEntity(out, strings, entity);
+        }
+    }
+
+    private static List<Entity> readEntities(DataInputStream in, String[] strings) throws IOException {
+        int size = in.readInt();
+        List<Entity> entities = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            entities.add(readEntity(in, strings));
+        }
+        return entities;
+    }
+
+    private static void writeEntity(DataOutputStream out, Map<String, Integer> strings, Entity entity) throws IOException {
+        out.writeBoolean(entity.isMethod());
+        out.writeInt(indexOf(strings, entity.getPackageName()));
+        out.writeInt(indexOf(strings, entity.getName()));
+        out.writeInt(indexOf(strings, entity.isMethod() ? entity.getSignature() : entity.getJavaType()));
+    }
+
+    private static Entity readEntity(DataInputStream in, String[] strings) throws IOException {
+        boolean isMethod = in.readBoolean();
+        String packageName = stringAt(strings, in.readInt());
+        String name = stringAt(strings, in.readInt());
+        String detail = stringAt(strings, in.readInt());
+        return isMethod
+                ? Entity.method(packageName, name, detail)
+                : Entity.field(packageName, detail, name);
+    }
+
+    private static int indexOf(Map<String, Integer> strings, String s) {
+        return s == null ? -1 : strings.get(s);
+    }
+
+    private static String stringAt(String[] strings, int index) {
+        return index < 0 ? null : strings[index];
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package preprocessor.extractor;
+
+import com.github.javaparser.JavaParser;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+public class FeatureExtractor {
+    private static final ThreadMXBean CPU_TIME = ManagementFactory.getThreadMXBean();
+
+    private final Supplier<JavaParser> parserFactory;
+    private final ExtractorConfig cfg;
+    private final FeatureCache cache;
+    // 解決結果のキャッシュはプロジェクト (この FeatureExtractor) の中でだけ共有する
+    private final ResolutionCache resolutionCache;
+    private final ExtractionStats stats = new ExtractionStats();
+
+    public FeatureExtractor(Supplier<JavaParser> parserFactory, ExtractorConfig cfg) {
+        this(parserFactory, cfg, null);
+    }
+
+    public FeatureExtractor(Supplier<JavaParser> parserFactory, ExtractorConfig cfg, FeatureCache cache) {
+        this.parserFactory = parserFactory;
+        this.cfg = cfg;
+        this.cache = cache;
+        this.resolutionCache = cfg.resolutionCache ? new ResolutionCache() : null;
+    }
+
+    public List<FileFeature> extractFeatures(List<Path> targetPaths) {
+        if (cfg.extractThreads > 1) {
+            return extractFeaturesInParallel(targetPaths);
+        }
+
+        // 1ファイルずつ処理していく
+        JavaParser parser = parserFactory.get();
+        List<FileFeature> fileFeatures = new ArrayList<>();
+        for (Path path : targetPaths) {
+            FileFeature fileFeature = processFile(path, parser);
+            if (fileFeature == null) {
+                continue;
+            }
+            fileFeatures.add(fileFeature);
+        }
+        recordStats(fileFeatures);
+        return fileFeatures;
+    }
+
+    public ExtractionStats getStats() {
+        return stats;
+    }
+
+    // 並行して処理される他のプロジェクトと混ざらないよう、標準出力には書かずプロジェクトの計測値に含める
+    private void recordStats(List<FileFeature> fileFeatures) {
+        stats.addDegraded(fileFeatures.stream().filter(FileFeature::isDegraded).count());
+        if (resolutionCache != null) {
+            stats.addResolutionCache(resolutionCache);
+        }
+    }
+
+    private List<FileFeature> extractFeaturesInParallel(List<Path> targetPaths) {
+        // JavaParser と TypeSolver はスレッドセーフではないので、スレッドごとに作ったものを使い回す
+        ThreadLocal<JavaParser> parsers = ThreadLocal.withInitial(parserFactory);
+        ExecutorService executor = Executors.newFixedThreadPool(cfg.extractThreads);
+        try {
+            List<Future<FileFeature>> futures = new ArrayList<>();
+            for (Path path : targetPaths) {
+                futures.add(executor.submit(() -> processFile(path, parsers.get())));
+            }
+            // 逐次処理と同じ結果になるよう、ファイルの順序で集める
+            List<FileFeature> fileFeatures = new ArrayList<>();
+            for (Future<FileFeature> future : futures) {
+                FileFeature fileFeature = future.get();
+                if (fileFeature == null) {
+                    continue;
+                }
+                fileFeatures.add(fileFeature);
+            }
+            recordStats(fileFeatures);
+            return fileFeatures;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private FileFeature processFile(Path path, JavaParser parser) {
+        // ASTを走査してfeatureを抽出
+        ExtractFeaturesTask extractFeaturesTask = new ExtractFeaturesTask(cfg, path, parser, cache, resolutionCache, stats);
+        long cpuStart = CPU_TIME.getCurrentThreadCpuTime();
+        try {
+            return extractFeaturesTask.processFile();
+        } catch (Exception | StackOverflowError e) {  // 型の解決時にStackOverflowになることがある
+            stats.addFailedFile(e);
+            return null;
+        } finally {
+            stats.addCpuNanos(CPU_TIME.getCurrentThreadCpuTime() - cpuStart);
+        }
+    }
+}
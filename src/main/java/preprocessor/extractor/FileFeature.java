@@ -1,6 +1,10 @@
 package preprocessor.extractor;
 
+import preprocessor.extractor.entity.Entity;
+import preprocessor.extractor.entity.Method;
+
 import java.util.Collections;
+import java.util.List;
 import java.util.Set;
 
 public class FileFeature {
@@ -8,15 +12,29 @@ public class FileFeature {
     private final String packageName;
     private final Set<String> imports;
     private final Set<String> callToPackages;
+    private final List<Entity> entities;
+    private final List<Method> methods;
+    // 解決の予算を超えたため、一部の呼び出し先が欠けている
+    private final boolean degraded;
+
+    public FileFeature(String packageName, Set<String> imports, Set<String> callToPackages,
+                       List<Entity> entities, List<Method> methods) {
+        this(packageName, imports, callToPackages, entities, methods, false);
+    }
 
-    public FileFeature(String packageName, Set<String> imports, Set<String> callToPackages) {
+    public FileFeature(String packageName, Set<String> imports, Set<String> callToPackages,
+                       List<Entity> entities, List<Method> methods, boolean degraded) {
         this.packageName = packageName;
         this.imports = imports;
         this.callToPackages = callToPackages;
+        this.entities = entities;
+        this.methods = methods;
+        this.degraded = degraded;
     }
 
     public static FileFeature empty() {
-        return new FileFeature(null, Collections.emptySet(), Collections.emptySet());
+        return new FileFeature(null, Collections.emptySet(), Collections.emptySet(),
+                Collections.emptyList(), Collections.emptyList());
     }
 
     public String getPackageName() {
@@ -31,4 +49,16 @@ public class FileFeature {
     public Set<String> getCallToPackages() {
         return callToPackages;
     }
+
+    public List<Entity> getEntities() {
+        return entities;
+    }
+
+    public List<Method> getMethods() {
+        return methods;
+    }
+
+    public boolean isDegraded() {
+        return degraded;
+    }
 }
@@ -2,34 +2,160 @@ package preprocessor.extractor;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
+/**
+ * 名前の正規化と分割。正規表現は使わず、文字を1度ずつ走査して処理する。
+ * 結果は以前の正規表現による実装 (split と replaceAll の組み合わせ) と同じになるようにしている
+ */
 public class NameNormalizer {
     public static String normalizeName(String original, String defaultString) {
-        original = original.toLowerCase().replaceAll("\\\\n", "") // escaped new
-                // lines
-                .replaceAll("//s+", "") // whitespaces
-                .replaceAll("[\"',]", "") // quotes, apostrophies, commas
-                .replaceAll("\\P{Print}", ""); // unicode weird characters
-        String stripped = original.replaceAll("[^A-Za-z]", "");
-        if (stripped.length() == 0) {
-            String carefulStripped = original.replaceAll(" ", "_");
-            if (carefulStripped.length() == 0) {
-                return defaultString;
-            } else {
-                return carefulStripped;
+        original = original.toLowerCase();
+        // エスケープされた改行 ("\n" の2文字) と "//s+" は、含まれうる場合だけ順に取り除く
+        if (original.indexOf('\\') >= 0) {
+            original = removeEscapedNewLines(original);
+        }
+        if (original.indexOf('/') >= 0) {
+            original = removeSlashSlashS(original);
+        }
+
+        // 引用符・カンマ・表示できない文字を除きつつ、英字だけを集める
+        StringBuilder stripped = null;
+        int printable = 0;
+        for (int i = 0; i < original.length(); i++) {
+            char c = original.charAt(i);
+            if (isRemoved(c)) {
+                continue;
+            }
+            printable++;
+            if (isAsciiLetter(c)) {
+                if (stripped == null) {
+                    stripped = new StringBuilder(original.length() - i);
+                }
+                stripped.append(c);
+            }
+        }
+        if (stripped != null) {
+            // すでに英字だけの場合はそのまま返す
+            return stripped.length() == original.length() ? original : stripped.toString();
+        }
+        if (printable == 0) {
+            return defaultString;
+        }
+        StringBuilder carefulStripped = new StringBuilder(printable);
+        for (int i = 0; i < original.length(); i++) {
+            char c = original.charAt(i);
+            if (!isRemoved(c)) {
+                carefulStripped.append(c == ' ' ? '_' : c);
             }
-        } else {
-            return stripped;
         }
+        return carefulStripped.toString();
     }
 
     public static List<String> subtokenizeMethodName(String str1) {
-        String str2 = str1.replace("|", " ");
-        String str3 = str2.trim();
-        return Stream.of(str3.split("(?<=[a-z])(?=[A-Z])|_|[0-9]|(?<=[A-Z])(?=[A-Z][a-z])|\\s+"))
-                .filter(s -> s.length() > 0).map(s -> normalizeName(s, ""))
-                .filter(s -> s.length() > 0).collect(Collectors.toCollection(ArrayList::new));
+        List<String> tokens = new ArrayList<>();
+        // 前後の空白 ('|' も空白として扱う) を除いた範囲を分割する
+        int begin = 0;
+        int end = str1.length();
+        while (begin < end && isTrimmed(str1.charAt(begin))) {
+            begin++;
+        }
+        while (end > begin && isTrimmed(str1.charAt(end - 1))) {
+            end--;
+        }
+
+        int start = begin;
+        for (int i = begin; i < end; i++) {
+            char c = str1.charAt(i);
+            if (isDelimiter(c)) {
+                addToken(tokens, str1, start, i);
+                start = i + 1;
+            } else if (i > begin && isCamelCaseBoundary(str1, i, end)) {
+                addToken(tokens, str1, start, i);
+                start = i;
+            }
+        }
+        addToken(tokens, str1, start, end);
+        return tokens;
+    }
+
+    private static void addToken(List<String> tokens, String str, int start, int end) {
+        if (start >= end) {
+            return;
+        }
+        String token = normalizeName(str.substring(start, end), "");
+        if (token.length() > 0) {
+            tokens.add(token);
+        }
+    }
+
+    // "aB" の a と B の間、および "ABc" の A と B の間で区切る
+    private static boolean isCamelCaseBoundary(String str, int i, int end) {
+        char prev = str.charAt(i - 1);
+        char c = str.charAt(i);
+        if (!isAsciiUpper(c)) {
+            return false;
+        }
+        if (isAsciiLower(prev)) {
+            return true;
+        }
+        return isAsciiUpper(prev) && i + 1 < end && isAsciiLower(str.charAt(i + 1));
+    }
+
+    private static boolean isDelimiter(char c) {
+        return c == '_' || (c >= '0' && c <= '9') || c == '|' || isRegexWhitespace(c);
+    }
+
+    // 正規表現の \s と同じ
+    private static boolean isRegexWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == 0x0B || c == '\f' || c == '\r';
+    }
+
+    // String#trim で除かれる文字
+    private static boolean isTrimmed(char c) {
+        return c <= ' ' || c == '|';
+    }
+
+    // 引用符・アポストロフィ・カンマと、\p{Print} (0x20-0x7E) 以外の文字
+    private static boolean isRemoved(char c) {
+        return c == '"' || c == '\'' || c == ',' || c < 0x20 || c > 0x7E;
+    }
+
+    private static boolean isAsciiLetter(char c) {
+        return isAsciiLower(c) || isAsciiUpper(c);
+    }
+
+    private static boolean isAsciiLower(char c) {
+        return c >= 'a' && c <= 'z';
+    }
+
+    private static boolean isAsciiUpper(char c) {
+        return c >= 'A' && c <= 'Z';
+    }
+
+    private static String removeEscapedNewLines(String s) {
+        StringBuilder sb = new StringBuilder(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            if (s.charAt(i) == '\\' && i + 1 < s.length() && s.charAt(i + 1) == 'n') {
+                i++;
+            } else {
+                sb.append(s.charAt(i));
+            }
+        }
+        return sb.toString();
+    }
+
+    private static String removeSlashSlashS(String s) {
+        StringBuilder sb = new StringBuilder(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            if (s.charAt(i) == '/' && i + 2 < s.length() && s.charAt(i + 1) == '/' && s.charAt(i + 2) == 's') {
+                i += 2;
+                while (i + 1 < s.length() && s.charAt(i + 1) == 's') {
+                    i++;
+                }
+            } else {
+                sb.append(s.charAt(i));
+            }
+        }
+        return sb.toString();
     }
 }
@@ -23,7 +23,10 @@ public class PackageCallExtractor {
         if (cu == null) {
             return Optional.empty();
         }
+        return extractPackageCall(cu);
+    }
 
+    public Optional<PackageCall> extractPackageCall(CompilationUnit cu) {
         if (cu.getPackageDeclaration().isEmpty()) {
             return Optional.empty();
         }
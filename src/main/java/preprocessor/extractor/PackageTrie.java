@@ -0,0 +1,101 @@
+package preprocessor.extractor;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * プロジェクト内のパッケージ名を "." 区切りのセグメント単位で保持し、
+ * 与えられた名前と先頭から最も長く一致するパッケージを引く
+ */
+public class PackageTrie {
+
+    private final Node root = new Node();
+
+    public PackageTrie(Collection<String> packages) {
+        for (String packageName : packages) {
+            Node node = root;
+            for (String segment : packageName.split("\\.")) {
+                node = node.builder.computeIfAbsent(segment, k -> new Node());
+                // 一致するセグメント数が同じパッケージが複数ある場合は、先に現れたものを優先する
+                if (node.packageName == null) {
+                    node.packageName = packageName;
+                }
+            }
+        }
+        root.freeze();
+    }
+
+    /**
+     * 先頭から2セグメント以上一致するパッケージのうち、最も長く一致するものを返す。
+     * 該当するものがなければ null を返す
+     */
+    public String findLongestMatch(String name) {
+        Node node = root;
+        String match = null;
+        int depth = 0;
+        int start = 0;
+        while (start <= name.length()) {
+            int end = name.indexOf('.', start);
+            if (end < 0) {
+                end = name.length();
+            }
+            node = node.find(name, start, end);
+            if (node == null) {
+                break;
+            }
+            depth++;
+            if (depth >= 2) {
+                match = node.packageName;
+            }
+            start = end + 1;
+        }
+        return match;
+    }
+
+    private static class Node {
+        private Map<String, Node> builder = new TreeMap<>();
+        private String[] segments;
+        private Node[] children;
+        private String packageName;
+
+        private void freeze() {
+            segments = builder.keySet().toArray(new String[0]);
+            children = builder.values().toArray(new Node[0]);
+            builder = null;
+            for (Node child : children) {
+                child.freeze();
+            }
+        }
+
+        private Node find(String name, int start, int end) {
+            int low = 0;
+            int high = segments.length - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                int c = compare(segments[mid], name, start, end);
+                if (c < 0) {
+                    low = mid + 1;
+                } else if (c > 0) {
+                    high = mid - 1;
+                } else {
+                    return children[mid];
+                }
+            }
+            return null;
+        }
+
+        // segment と name[start, end) を String#compareTo と同じ順序で比較する
+        private static int compare(String segment, String name, int start, int end) {
+            int length = end - start;
+            int n = Math.min(segment.length(), length);
+            for (int i = 0; i < n; i++) {
+                int c = segment.charAt(i) - name.charAt(start + i);
+                if (c != 0) {
+                    return c;
+                }
+            }
+            return segment.length() - length;
+        }
+    }
+}
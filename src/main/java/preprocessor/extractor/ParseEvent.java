@@ -0,0 +1,26 @@
+package preprocessor.extractor;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * 1ファイルのパース (JFR のイベント)
+ */
+@Name("preprocessor.Parse")
+@Label("Parse")
+@Category("Preprocessor")
+@StackTrace(false)
+@Description("Parsing of one source file by JavaParser")
+public class ParseEvent extends jdk.jfr.Event {
+    @Label("File")
+    public String file;
+
+    @Label("Characters")
+    public long characters;
+
+    @Label("Succeeded")
+    public boolean succeeded;
+}
@@ -0,0 +1,155 @@
+package preprocessor.extractor;
+
+import java.util.function.Supplier;
+
+/**
+ * 型・シンボルの解決にかけてよい時間。1つの式あたりとファイル全体の2つの上限を持つ。
+ * 解決処理中は BudgetedTypeSolver が型を探すたびに残り時間を確かめ、過ぎていれば例外で打ち切る。
+ * ファイル全体の上限を使い切った後は、そのファイルの残りの解決をすべて飛ばす
+ */
+public class ResolutionBudget implements AutoCloseable {
+    private static final ThreadLocal<ResolutionBudget> CURRENT = new ThreadLocal<>();
+
+    private final long expressionNanos;
+    private final long fileNanos;
+    private long usedNanos = 0;
+    private long deadline = Long.MAX_VALUE;
+    // 現在の式の解決を制限時間で打ち切ったか
+    private boolean interrupted = false;
+    private boolean degraded = false;
+    private int skippedExpressions = 0;
+    private int resolutionFailures = 0;
+    private int stackOverflows = 0;
+
+    private ResolutionBudget(long expressionNanos, long fileNanos) {
+        this.expressionNanos = expressionNanos > 0 ? expressionNanos : Long.MAX_VALUE;
+        this.fileNanos = fileNanos > 0 ? fileNanos : Long.MAX_VALUE;
+    }
+
+    /**
+     * 現在のスレッドで1ファイル分の予算を使い始める。close するまで、このスレッドの解決処理に適用される
+     */
+    public static ResolutionBudget start(long expressionNanos, long fileNanos) {
+        ResolutionBudget budget = new ResolutionBudget(expressionNanos, fileNanos);
+        CURRENT.set(budget);
+        return budget;
+    }
+
+    /**
+     * 予算の範囲で解決処理を行う。予算がない場合や使い切っている場合は ResolutionBudgetExceededException を投げる
+     */
+    public static <T> T resolve(Supplier<T> resolver) {
+        ResolutionBudget budget = CURRENT.get();
+        if (budget == null) {
+            return resolver.get();
+        }
+        return budget.run(resolver);
+    }
+
+    /**
+     * 解決処理の途中で呼ばれ、現在の式の制限時間を過ぎていれば打ち切る
+     */
+    public static void checkpoint() {
+        ResolutionBudget budget = CURRENT.get();
+        if (budget != null && budget.deadline != Long.MAX_VALUE && System.nanoTime() - budget.deadline > 0) {
+            budget.interrupted = true;
+            throw new ResolutionBudgetExceededException();
+        }
+    }
+
+    /**
+     * 現在の式の解決が制限時間で打ち切られたか。
+     * 解決処理の中で例外が包み直されても、解決できなかった結果と区別するために使う
+     */
+    public static boolean isInterrupted() {
+        ResolutionBudget budget = CURRENT.get();
+        return budget != null && budget.interrupted;
+    }
+
+    /**
+     * 式の解決に失敗したことを記録する。予算切れで打ち切った・飛ばしたものは失敗として数えない
+     */
+    public static void recordFailure(Throwable e) {
+        ResolutionBudget budget = CURRENT.get();
+        if (budget == null || isBudgetExceeded(e)) {
+            return;
+        }
+        if (e instanceof StackOverflowError) {
+            budget.stackOverflows++;
+        } else {
+            budget.resolutionFailures++;
+        }
+    }
+
+    // 解決処理の中で包み直されていることがあるので、原因もたどる
+    public static boolean isBudgetExceeded(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof ResolutionBudgetExceededException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private <T> T run(Supplier<T> resolver) {
+        if (isExhausted()) {
+            skippedExpressions++;
+            throw new ResolutionBudgetExceededException();
+        }
+        long start = System.nanoTime();
+        long allowed = Math.min(expressionNanos, fileNanos - usedNanos);
+        deadline = allowed == Long.MAX_VALUE ? Long.MAX_VALUE : start + allowed;
+        interrupted = false;
+        try {
+            return resolver.get();
+        } finally {
+            if (interrupted) {
+                degraded = true;
+                skippedExpressions++;
+                interrupted = false;
+            }
+            deadline = Long.MAX_VALUE;
+            usedNanos += System.nanoTime() - start;
+            if (isExhausted()) {
+                degraded = true;
+            }
+        }
+    }
+
+    private boolean isExhausted() {
+        return fileNanos != Long.MAX_VALUE && usedNanos >= fileNanos;
+    }
+
+    /**
+     * 予算を超えて解決を打ち切った、あるいは飛ばした式があるか
+     */
+    public boolean isDegraded() {
+        return degraded;
+    }
+
+    public int getSkippedExpressions() {
+        return skippedExpressions;
+    }
+
+    public int getResolutionFailures() {
+        return resolutionFailures;
+    }
+
+    public int getStackOverflows() {
+        return stackOverflows;
+    }
+
+    @Override
+    public void close() {
+        CURRENT.remove();
+    }
+
+    public static class ResolutionBudgetExceededException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        public ResolutionBudgetExceededException() {
+            // 頻繁に投げられうるので、スタックトレースは取らない
+            super("symbol resolution budget exceeded", null, false, false);
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package preprocessor.extractor;
+
+import com.github.javaparser.ast.expr.Expression;
+import com.github.javaparser.ast.expr.FieldAccessExpr;
+import com.github.javaparser.ast.expr.MethodCallExpr;
+import com.github.javaparser.resolution.types.ResolvedReferenceType;
+import com.github.javaparser.resolution.types.ResolvedType;
+import preprocessor.extractor.entity.Entity;
+
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * プロジェクト内で、メソッド呼び出し・フィールドアクセスの解決結果を使い回すためのキャッシュ。
+ * 呼び出し箇所の形 (レシーバの型・名前・引数の型) をキーに、解決先のエンティティか、プロジェクト外・解決失敗を表す空の結果を持つ。
+ * 型変数を含む型は宣言箇所によって意味が変わるため、キーにしない
+ */
+public class ResolutionCache {
+    private final ConcurrentHashMap<String, Optional<Entity>> entries = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * キャッシュされた解決結果。キャッシュされていない場合は null
+     */
+    public Optional<Entity> lookup(String key) {
+        Optional<Entity> entity = entries.get(key);
+        if (entity != null) {
+            hits.increment();
+        } else {
+            misses.increment();
+        }
+        return entity;
+    }
+
+    public void store(String key, Optional<Entity> entity) {
+        entries.putIfAbsent(key, entity);
+    }
+
+    /**
+     * メソッド呼び出しのキー。レシーバがない場合 (static import やエンクロージングクラスのメソッドなど、ファイルによって
+     * 解決先が変わりうる) や、キーにできない型を含む場合は null
+     */
+    public static String methodKey(MethodCallExpr call) {
+        if (call.getScope().isEmpty() || call.getTypeArguments().isPresent()) {
+            return null;
+        }
+        try {
+            ResolvedType scopeType = call.getScope().get().calculateResolvedType();
+            if (!scopeType.isReferenceType() || !isStable(scopeType)) {
+                return null;
+            }
+            StringBuilder sb = new StringBuilder("M ")
+                    .append(scopeType.describe()).append('#').append(call.getNameAsString()).append('(');
+            for (Expression argument : call.getArguments()) {
+                ResolvedType argumentType = argument.calculateResolvedType();
+                if (!isStable(argumentType)) {
+                    return null;
+                }
+                sb.append(argumentType.describe()).append(',');
+            }
+            return sb.append(')').toString();
+        } catch (ResolutionBudget.ResolutionBudgetExceededException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            // 型が分からない場合はキャッシュを使わずに解決する
+            return null;
+        }
+    }
+
+    /**
+     * フィールドアクセスのキー。レシーバの型がキーにできない場合は null
+     */
+    public static String fieldKey(FieldAccessExpr access) {
+        try {
+            ResolvedType scopeType = access.getScope().calculateResolvedType();
+            if (!scopeType.isReferenceType() || !isStable(scopeType)) {
+                return null;
+            }
+            return "F " + scopeType.describe() + "#" + access.getNameAsString();
+        } catch (ResolutionBudget.ResolutionBudgetExceededException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    // 型変数やワイルドカードを含まない型か
+    private static boolean isStable(ResolvedType type) {
+        if (type.isPrimitive() || type.isNull()) {
+            return true;
+        }
+        if (type.isArray()) {
+            return isStable(type.asArrayType().getComponentType());
+        }
+        if (type.isReferenceType()) {
+            ResolvedReferenceType referenceType = type.asReferenceType();
+            for (ResolvedType typeParameter : referenceType.typeParametersValues()) {
+                if (!isStable(typeParameter)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+}
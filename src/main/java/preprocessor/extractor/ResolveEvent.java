@@ -0,0 +1,86 @@
+package preprocessor.extractor;
+
+import com.github.javaparser.ast.Node;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * 1つの式の型・シンボルの解決 (JFR のイベント)。解決にかかった時間はイベントの期間になる。
+ * 数が多いのでスタックトレースは取らず、呼び出し箇所はファイルと行で表す
+ */
+@Name("preprocessor.Resolve")
+@Label("Resolve")
+@Category("Preprocessor")
+@StackTrace(false)
+@Description("Symbol resolution of one expression")
+public class ResolveEvent extends jdk.jfr.Event {
+    public static final String RESOLVED = "resolved";
+    // 解決できたが、ライブラリのメソッドなど距離の計算に使わない宣言だった
+    public static final String EXTERNAL = "external";
+    // ResolutionCache の結果を使った
+    public static final String CACHED = "cached";
+    public static final String FAILED = "failed";
+    public static final String STACK_OVERFLOW = "stack overflow";
+    public static final String BUDGET_EXCEEDED = "budget exceeded";
+
+    private static final int MAX_EXPRESSION_LENGTH = 200;
+    // 解決中のファイル。ExtractFeaturesTask がファイルの処理中だけ設定する
+    private static final ThreadLocal<String> CURRENT_FILE = new ThreadLocal<>();
+
+    @Label("File")
+    public String file;
+
+    @Label("Line")
+    public int line;
+
+    @Label("Kind")
+    public String kind;
+
+    @Label("Expression")
+    public String expression;
+
+    @Label("Outcome")
+    public String outcome;
+
+    public static void setCurrentFile(String file) {
+        CURRENT_FILE.set(file);
+    }
+
+    public static void clearCurrentFile() {
+        CURRENT_FILE.remove();
+    }
+
+    public static ResolveEvent start() {
+        ResolveEvent event = new ResolveEvent();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * 解決を終えてイベントを記録する。式の文字列化などは記録する場合だけ行う
+     */
+    public void finish(Node node, String kind, String outcome) {
+        end();
+        if (!shouldCommit()) {
+            return;
+        }
+        this.file = CURRENT_FILE.get();
+        this.line = node.getBegin().map(position -> position.line).orElse(-1);
+        this.kind = kind;
+        String expression = node.toString();
+        this.expression = expression.length() > MAX_EXPRESSION_LENGTH
+                ? expression.substring(0, MAX_EXPRESSION_LENGTH) : expression;
+        this.outcome = outcome;
+        commit();
+    }
+
+    public static String outcomeOf(Throwable e) {
+        if (ResolutionBudget.isBudgetExceeded(e)) {
+            return BUDGET_EXCEEDED;
+        }
+        return e instanceof StackOverflowError ? STACK_OVERFLOW : FAILED;
+    }
+}
@@ -13,6 +13,7 @@ public class Entity {
     private final String javaType;
     private final String name;
     private final String signature;
+    private final int hash;
 //    private final Set<MethodOrField> a;  // TODO アクセス先のエンティティ一覧が必要だが、MethodOrField オブジェクトへの参照とするとどっちを先に作る問題が発生してしまう
 
     private Entity(EntityType entityType, String packageName, String javaType, String name, String signature) {
@@ -21,15 +22,24 @@ public class Entity {
         this.javaType = javaType;
         this.name = name;
         this.signature = signature;
+        this.hash = Objects.hash(entityType, packageName, javaType, name, signature);
     }
 
     public static Entity method(String packageName, MethodDeclaration methodDeclaration) {
         String signature = methodDeclaration.getSignature().asString();
-        return new Entity(EntityType.METHOD, packageName, null, methodDeclaration.getNameAsString(), signature);
+        return method(packageName, methodDeclaration.getNameAsString(), signature);
+    }
+
+    public static Entity method(String packageName, String name, String signature) {
+        return new Entity(EntityType.METHOD, packageName, null, name, signature);
     }
 
     public static Entity field(String packageName, VariableDeclarator varDecl) {
-        return new Entity(EntityType.FIELD, packageName, varDecl.getType().asString(), varDecl.getNameAsString(), null);
+        return field(packageName, varDecl.getType().asString(), varDecl.getNameAsString());
+    }
+
+    public static Entity field(String packageName, String javaType, String name) {
+        return new Entity(EntityType.FIELD, packageName, javaType, name, null);
     }
 
     public boolean isMethod() {
@@ -40,6 +50,10 @@ public class Entity {
         return packageName;
     }
 
+    public String getJavaType() {
+        return javaType;
+    }
+
     public String getName() {
         return name;
     }
@@ -58,12 +72,12 @@ public class Entity {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         Entity entity = (Entity) o;
-        return entityType == entity.entityType && packageName.equals(entity.packageName) && Objects.equals(javaType, entity.javaType) && name.equals(entity.name) && Objects.equals(signature, entity.signature);
+        return hash == entity.hash && entityType == entity.entityType && packageName.equals(entity.packageName) && Objects.equals(javaType, entity.javaType) && name.equals(entity.name) && Objects.equals(signature, entity.signature);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(entityType, packageName, javaType, name, signature);
+        return hash;
     }
 
     @Override
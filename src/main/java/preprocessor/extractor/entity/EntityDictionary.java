@@ -0,0 +1,20 @@
+package preprocessor.extractor.entity;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * プロジェクト内のエンティティに 0 から始まる連番の ID を振る
+ */
+public class EntityDictionary {
+
+    private final Map<Entity, Integer> ids = new HashMap<>();
+
+    public int intern(Entity entity) {
+        return ids.computeIfAbsent(entity, e -> ids.size());
+    }
+
+    public int size() {
+        return ids.size();
+    }
+}
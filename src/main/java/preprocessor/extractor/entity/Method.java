@@ -11,24 +11,40 @@ public class Method {
     private final String packageName;
     private final Set<Entity> entities = new HashSet<>();
     private final Entity correspondingEntity;
+    private int[] entityIds = new int[0];
+    private int correspondingEntityId = -1;
     private final Path filePath;
     private final int lineFrom;
     private final int lineTo;
     private final String signature;
 
     public Method(Path filePath, String packageName, MethodDeclaration decl) {
+        this(filePath, packageName, Entity.method(packageName, decl),
+                decl.getRange().map(r -> r.begin.line).orElse(0),
+                decl.getRange().map(r -> r.end.line).orElse(0));
+    }
+
+    public Method(Path filePath, String packageName, Entity correspondingEntity, int lineFrom, int lineTo) {
         this.packageName = packageName;
-        this.correspondingEntity = Entity.method(packageName, decl);
+        this.correspondingEntity = correspondingEntity;
         this.filePath = filePath;
-        this.lineFrom = decl.getRange().map(r -> r.begin.line).orElse(0);
-        this.lineTo = decl.getRange().map(r -> r.end.line).orElse(0);
-        this.signature = decl.getSignature().asString();
+        this.lineFrom = lineFrom;
+        this.lineTo = lineTo;
+        this.signature = correspondingEntity.getSignature();
     }
 
     public void addEntities(Collection<Entity> entities) {
         this.entities.addAll(entities);
     }
 
+    /**
+     * 距離計算のため、呼び出し先エンティティをソート済みの ID 配列に変換しておく
+     */
+    public void internEntities(EntityDictionary dictionary) {
+        this.entityIds = entities.stream().mapToInt(dictionary::intern).sorted().toArray();
+        this.correspondingEntityId = dictionary.intern(correspondingEntity);
+    }
+
     public String getPackageName() {
         return packageName;
     }
@@ -58,21 +74,26 @@ public class Method {
     }
 
     public double calcDistance(Package package_) {
-        var entitySet = entities;
-        var packageSet = package_.getEntities();
-        if (packageName.equals(package_.getName())) {
-            packageSet.remove(correspondingEntity);
+        // 自身が属するパッケージとの距離は、自身を除いたパッケージとの距離とする
+        int excludedId = -1;
+        int packageSize = package_.size();
+        if (packageName.equals(package_.getName()) && package_.containsEntity(correspondingEntityId)) {
+            excludedId = correspondingEntityId;
+            packageSize--;
         }
 
-        Set<Entity> union = new HashSet<>(entitySet);
-        union.addAll(packageSet);
+        int intersection = 0;
+        for (int entityId : entityIds) {
+            if (entityId != excludedId && package_.containsEntity(entityId)) {
+                intersection++;
+            }
+        }
+        int union = entityIds.length + packageSize - intersection;
 
-        if (union.isEmpty()) {
+        if (union == 0) {
             return 1.0;
         } else {
-            Set<Entity> intersection = new HashSet<>(packageSet);
-            intersection.retainAll(entitySet);
-            return 1.0 - (double) intersection.size() / (double) union.size();
+            return 1.0 - (double) intersection / (double) union;
         }
     }
 }
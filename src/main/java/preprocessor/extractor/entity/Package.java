@@ -1,27 +1,40 @@
 package preprocessor.extractor.entity;
 
+import java.util.BitSet;
 import java.util.Collection;
-import java.util.HashSet;
-import java.util.Set;
 
 public class Package {
 
     private final String name;
-    private final Set<Entity> entities = new HashSet<>();
+    private final BitSet entityIds = new BitSet();
+    private int size = 0;
 
     public Package(String name) {
         this.name = name;
     }
 
-    public void addEntities(Collection<Entity> entities) {
-        this.entities.addAll(entities);
+    public void addEntities(Collection<Entity> entities, EntityDictionary dictionary) {
+        for (Entity entity : entities) {
+            addEntity(dictionary.intern(entity));
+        }
     }
 
     public String getName() {
         return name;
     }
 
-    public Set<Entity> getEntities() {
-        return entities;
+    public boolean containsEntity(int entityId) {
+        return entityIds.get(entityId);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    void addEntity(int entityId) {
+        if (!entityIds.get(entityId)) {
+            entityIds.set(entityId);
+            size++;
+        }
     }
 }
@@ -0,0 +1,121 @@
+package preprocessor.extractor.visitor;
+
+import com.github.javaparser.ast.body.MethodDeclaration;
+import com.github.javaparser.ast.body.VariableDeclarator;
+import com.github.javaparser.ast.expr.FieldAccessExpr;
+import com.github.javaparser.ast.expr.MethodCallExpr;
+import com.github.javaparser.ast.visitor.VoidVisitorAdapter;
+import com.github.javaparser.resolution.declarations.ResolvedMethodDeclaration;
+import com.github.javaparser.resolution.declarations.ResolvedValueDeclaration;
+import com.github.javaparser.symbolsolver.javaparsermodel.declarations.JavaParserFieldDeclaration;
+import com.github.javaparser.symbolsolver.javaparsermodel.declarations.JavaParserMethodDeclaration;
+import preprocessor.extractor.ResolutionBudget;
+import preprocessor.extractor.ResolutionCache;
+import preprocessor.extractor.ResolveEvent;
+import preprocessor.extractor.entity.Entity;
+
+import java.util.HashSet;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+
+public class EntityCallCollectorVisitor extends VoidVisitorAdapter<Object> {
+
+    private final Set<Entity> entityCalls = new HashSet<>();
+    private final ResolutionCache cache;
+    // 直前の解決の結果 (JFR のイベント用)
+    private String outcome;
+
+    public EntityCallCollectorVisitor() {
+        this(null);
+    }
+
+    public EntityCallCollectorVisitor(ResolutionCache cache) {
+        this.cache = cache;
+    }
+
+    @Override
+    public void visit(MethodCallExpr n, Object arg) {
+        super.visit(n, arg);
+        ResolveEvent event = ResolveEvent.start();
+        try {
+            ResolutionBudget.resolve(() -> resolveCached(n, ResolutionCache::methodKey, this::resolveMethod))
+                    .ifPresent(entityCalls::add);
+        } catch (Exception | StackOverflowError e) {
+            ResolutionBudget.recordFailure(e);
+            outcome = ResolveEvent.outcomeOf(e);
+        }
+        event.finish(n, "method call", outcome);
+    }
+
+    @Override
+    public void visit(FieldAccessExpr n, Object arg) {
+        super.visit(n, arg);
+        ResolveEvent event = ResolveEvent.start();
+        try {
+            ResolutionBudget.resolve(() -> resolveCached(n, ResolutionCache::fieldKey, this::resolveField))
+                    .ifPresent(entityCalls::add);
+        } catch (Exception | StackOverflowError e) {
+            ResolutionBudget.recordFailure(e);
+            outcome = ResolveEvent.outcomeOf(e);
+        }
+        event.finish(n, "field access", outcome);
+    }
+
+    private <T> Optional<Entity> resolveCached(T n, Function<T, String> keyFunction, Function<T, Optional<Entity>> resolver) {
+        String key = cache != null ? keyFunction.apply(n) : null;
+        if (key != null) {
+            Optional<Entity> cached = cache.lookup(key);
+            if (cached != null) {
+                outcome = ResolveEvent.CACHED;
+                return cached;
+            }
+        }
+        Optional<Entity> entity;
+        try {
+            entity = resolver.apply(n);
+            outcome = entity.isPresent() ? ResolveEvent.RESOLVED : ResolveEvent.EXTERNAL;
+        } catch (RuntimeException e) {
+            if (ResolutionBudget.isInterrupted()) {
+                // 予算切れは解決できなかったことにはならないので、キャッシュしない
+                throw e;
+            }
+            ResolutionBudget.recordFailure(e);
+            outcome = ResolveEvent.FAILED;
+            entity = Optional.empty();
+        }
+        if (ResolutionBudget.isInterrupted()) {
+            // JavaParser の中で予算切れの例外が握りつぶされ、代わりの結果が返ってきた場合も、
+            // 正しく解決できたとは限らないので他のファイルに使い回さない
+            outcome = ResolveEvent.BUDGET_EXCEEDED;
+            return entity;
+        }
+        if (key != null) {
+            cache.store(key, entity);
+        }
+        return entity;
+    }
+
+    private Optional<Entity> resolveMethod(MethodCallExpr n) {
+        ResolvedMethodDeclaration m = n.resolve();
+        if (m instanceof JavaParserMethodDeclaration) {
+            MethodDeclaration methodDecl = m.toAst().get();
+            return Optional.of(Entity.method(m.getPackageName(), methodDecl));
+        }
+        return Optional.empty();
+    }
+
+    private Optional<Entity> resolveField(FieldAccessExpr n) {
+        ResolvedValueDeclaration d = n.resolve();
+        if (d instanceof JavaParserFieldDeclaration) {
+            VariableDeclarator varDecl = ((JavaParserFieldDeclaration) d).getVariableDeclarator();
+            String packageName = ((JavaParserFieldDeclaration) d).declaringType().getPackageName();
+            return Optional.of(Entity.field(packageName, varDecl));
+        }
+        return Optional.empty();
+    }
+
+    public Set<Entity> getEntityCalls() {
+        return entityCalls;
+    }
+}
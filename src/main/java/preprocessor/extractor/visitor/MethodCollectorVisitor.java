@@ -0,0 +1,21 @@
+package preprocessor.extractor.visitor;
+
+import com.github.javaparser.ast.body.MethodDeclaration;
+import com.github.javaparser.ast.visitor.VoidVisitorAdapter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class MethodCollectorVisitor extends VoidVisitorAdapter<Object> {
+
+    private final List<MethodDeclaration> methods = new ArrayList<>();
+
+    @Override
+    public void visit(MethodDeclaration n, Object arg) {
+        methods.add(n);
+    }
+
+    public List<MethodDeclaration> getMethods() {
+        return methods;
+    }
+}
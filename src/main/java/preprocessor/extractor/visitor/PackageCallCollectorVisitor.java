@@ -6,6 +6,8 @@ import com.github.javaparser.ast.visitor.VoidVisitorAdapter;
 import com.github.javaparser.resolution.declarations.ResolvedTypeDeclaration;
 import com.github.javaparser.resolution.types.ResolvedType;
 import com.github.javaparser.symbolsolver.javaparsermodel.declarations.JavaParserMethodDeclaration;
+import preprocessor.extractor.ResolutionBudget;
+import preprocessor.extractor.ResolveEvent;
 
 import java.util.HashSet;
 import java.util.Set;
@@ -37,8 +39,12 @@ public class PackageCallCollectorVisitor extends VoidVisitorAdapter<Object> {
             return;
         }
 
+        ResolveEvent event = ResolveEvent.start();
+        // StackOverflowError はここでは捕まえずに呼び出し側に任せるが、イベントは記録する
+        String outcome = ResolveEvent.STACK_OVERFLOW;
         try {
-            ResolvedType type = expr.calculateResolvedType();
+            ResolvedType type = ResolutionBudget.resolve(expr::calculateResolvedType);
+            outcome = ResolveEvent.RESOLVED;
             if (type.isReferenceType()) {
                 type.asReferenceType()
                         .getTypeDeclaration()
@@ -46,7 +52,10 @@ public class PackageCallCollectorVisitor extends VoidVisitorAdapter<Object> {
                         .ifPresent(packageCalls::add);
             }
         } catch (Exception e) {
-            // NOP
+            ResolutionBudget.recordFailure(e);
+            outcome = ResolveEvent.outcomeOf(e);
+        } finally {
+            event.finish(expr, "scope type", outcome);
         }
     }
 
@@ -0,0 +1,101 @@
+package preprocessor.extractor;
+
+import com.google.common.collect.Sets;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 転置インデックスによる import を共有するパッケージの追加が、以前の全パッケージの組について積集合を取る実装と
+ * 同じ候補パッケージを返すことを確かめる
+ */
+class CandidatePackageCalculatorTest {
+
+    @Test
+    void addImportSharingPackagesMatchesAllPairsIntersection() {
+        Map<String, Set<String>> newImports = new LinkedHashMap<>();
+        newImports.put("com.a", Sets.newHashSet("java.util", "com.b", "org.lib"));
+        newImports.put("com.b", Sets.newHashSet("java.util"));
+        newImports.put("com.c", Sets.newHashSet("org.lib", "org.only.c"));
+        // import のないパッケージと、1つのパッケージだけが import しているもの
+        newImports.put("com.d", new HashSet<>());
+        newImports.put("com.e", Sets.newHashSet("org.only.e"));
+        assertSameCandidates(newImports, initialCandidates(newImports, new Random(1), 0));
+    }
+
+    @Test
+    void addImportSharingPackagesMatchesAllPairsIntersectionOnRandomImports() {
+        Random random = new Random(11);
+        for (int round = 0; round < 300; round++) {
+            int packageCount = 1 + random.nextInt(30);
+            int importCount = 1 + random.nextInt(40);
+            Map<String, Set<String>> newImports = new LinkedHashMap<>();
+            for (int i = 0; i < packageCount; i++) {
+                Set<String> imports = new HashSet<>();
+                // 一部のパッケージは import を持たない
+                int n = random.nextInt(4) == 0 ? 0 : random.nextInt(6);
+                for (int j = 0; j < n; j++) {
+                    // プロジェクト内のパッケージとライブラリの両方を import する
+                    imports.add(random.nextBoolean() ? "p" + random.nextInt(packageCount) : "lib" + random.nextInt(importCount));
+                }
+                newImports.put("p" + i, imports);
+            }
+            assertSameCandidates(newImports, initialCandidates(newImports, random, packageCount));
+        }
+    }
+
+    private static void assertSameCandidates(Map<String, Set<String>> newImports, Map<String, Set<String>> initial) {
+        Map<String, Set<String>> expected = copy(initial);
+        legacyAddImportSharingPackages(newImports, expected);
+        Map<String, Set<String>> actual = copy(initial);
+        CandidatePackageCalculator.addImportSharingPackages(newImports, actual);
+        assertEquals(expected, actual, () -> "imports " + newImports);
+    }
+
+    // 自分自身と、呼び出しなどで先に加わっている候補
+    private static Map<String, Set<String>> initialCandidates(Map<String, Set<String>> newImports, Random random, int connections) {
+        Map<String, Set<String>> candidates = new HashMap<>();
+        for (String p : newImports.keySet()) {
+            candidates.put(p, Sets.newHashSet(p));
+        }
+        String[] packages = newImports.keySet().toArray(new String[0]);
+        for (int i = 0; i < connections; i++) {
+            String x = packages[random.nextInt(packages.length)];
+            String y = packages[random.nextInt(packages.length)];
+            candidates.get(x).add(y);
+            candidates.get(y).add(x);
+        }
+        return candidates;
+    }
+
+    private static Map<String, Set<String>> copy(Map<String, Set<String>> map) {
+        Map<String, Set<String>> copy = new HashMap<>();
+        map.forEach((k, v) -> copy.put(k, new HashSet<>(v)));
+        return copy;
+    }
+
+    /**
+     * 転置インデックスを使う前の、全パッケージの組について import の積集合を取る実装
+     */
+    private static void legacyAddImportSharingPackages(Map<String, Set<String>> newImports,
+                                                       Map<String, Set<String>> candidatePackages) {
+        Set<String> allPackages = newImports.keySet();
+        for (String target : allPackages) {
+            for (String candidate : allPackages) {
+                var intersection = Sets.intersection(
+                        newImports.get(target), newImports.get(candidate));
+                if (!intersection.isEmpty()) {
+                    candidatePackages.get(target).add(candidate);
+                    candidatePackages.get(candidate).add(target);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package preprocessor.extractor;
+
+import com.github.javaparser.JavaParser;
+import com.github.javaparser.symbolsolver.JavaSymbolSolver;
+import com.github.javaparser.symbolsolver.javaparsermodel.JavaParserFacade;
+import com.github.javaparser.symbolsolver.resolution.typesolvers.CombinedTypeSolver;
+import com.github.javaparser.symbolsolver.resolution.typesolvers.JavaParserTypeSolver;
+import com.github.javaparser.symbolsolver.resolution.typesolvers.ReflectionTypeSolver;
+import org.junit.jupiter.api.Test;
+import preprocessor.extractor.entity.Method;
+import preprocessor.extractor.entity.Package;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * --extract_threads で複数のスレッドから抽出した結果が、1スレッドで抽出した結果と同じになることを
+ * ベンチマーク用のソース (fixtures/shop) で確かめる
+ */
+class FeatureExtractorTest {
+    private static final Path PROJECT_DIR = Paths.get("src/jmh/resources/fixtures/shop");
+
+    @Test
+    void parallelExtractionMatchesSequential() throws IOException {
+        assertParallelMatchesSequential(false);
+    }
+
+    @Test
+    void parallelExtractionWithResolutionCacheMatchesSequential() throws IOException {
+        assertParallelMatchesSequential(true);
+    }
+
+    private static void assertParallelMatchesSequential(boolean resolutionCache) throws IOException {
+        List<Path> paths = new ArrayList<>();
+        Set<String> allPackages = new HashSet<>();
+        for (String file : Files.readAllLines(PROJECT_DIR.resolve("files.txt"))) {
+            if (!file.isBlank()) {
+                Path path = PROJECT_DIR.resolve(file.strip());
+                paths.add(path);
+                allPackages.add(PROJECT_DIR.relativize(path).getParent().toString().replace("/", "."));
+            }
+        }
+
+        List<FileFeature> sequential = extract(paths, 1, resolutionCache);
+        List<FileFeature> parallel = extract(paths, 4, resolutionCache);
+        assertFalse(sequential.isEmpty());
+
+        // ファイルごとの feature
+        assertEquals(describe(sequential), describe(parallel));
+        // それをまとめた候補パッケージと、パッケージごとのエンティティ・メソッドとの距離
+        assertEquals(new CandidatePackageCalculator(new ExtractorConfig()).listCandidatePackages(sequential, allPackages),
+                new CandidatePackageCalculator(new ExtractorConfig()).listCandidatePackages(parallel, allPackages));
+        assertEquals(describe(new DistanceCalculator(allPackages).calcDistances(sequential)),
+                describe(new DistanceCalculator(allPackages).calcDistances(parallel)));
+    }
+
+    private static List<FileFeature> extract(List<Path> paths, int threads, boolean resolutionCache) {
+        ExtractorConfig cfg = new ExtractorConfig();
+        cfg.extractThreads = threads;
+        cfg.resolutionCache = resolutionCache;
+        try {
+            return new FeatureExtractor(FeatureExtractorTest::createParser, cfg).extractFeatures(paths);
+        } finally {
+            // プロジェクトの処理の終わりと同じく、型の解決結果を捨てて次の抽出に持ち越さない
+            synchronized (JavaParserFacade.class) {
+                JavaParserFacade.clearInstances();
+            }
+        }
+    }
+
+    private static JavaParser createParser() {
+        CombinedTypeSolver typeSolver = new CombinedTypeSolver();
+        typeSolver.add(new JavaParserTypeSolver(PROJECT_DIR));
+        typeSolver.add(new ReflectionTypeSolver());
+        JavaParser parser = new JavaParser();
+        parser.getParserConfiguration().setSymbolResolver(new JavaSymbolSolver(new BudgetedTypeSolver(typeSolver)));
+        return parser;
+    }
+
+    private static List<String> describe(List<FileFeature> fileFeatures) {
+        List<String> lines = new ArrayList<>();
+        for (FileFeature f : fileFeatures) {
+            lines.add("file " + f.getPackageName() + " imports " + sorted(f.getImports())
+                    + " calls " + sorted(f.getCallToPackages()) + " entities " + f.getEntities()
+                    + " degraded " + f.isDegraded());
+            for (Method m : f.getMethods()) {
+                lines.add("  " + describe(m) + " " + sorted(m.getEntities()));
+            }
+        }
+        return lines;
+    }
+
+    private static List<String> describe(DistanceCalculator.DistanceCalculationResult result) {
+        List<String> lines = new ArrayList<>();
+        Map<String, Package> packages = new TreeMap<>(result.getPackages());
+        for (Package p : packages.values()) {
+            lines.add("package " + p.getName() + " size " + p.size());
+        }
+        for (Method m : result.getMethods()) {
+            StringBuilder sb = new StringBuilder(describe(m));
+            for (Package p : packages.values()) {
+                sb.append(' ').append(p.getName()).append('=').append(m.calcDistance(p));
+            }
+            lines.add(sb.toString());
+        }
+        return lines;
+    }
+
+    private static String describe(Method m) {
+        return m.getFilePath() + ":" + m.getLineFrom() + "-" + m.getLineTo() + " " + m.getSignature();
+    }
+
+    // 集合は順序を揃えて比べる
+    private static Set<String> sorted(Set<?> set) {
+        Set<String> sorted = new TreeSet<>();
+        for (Object o : set) {
+            sorted.add(String.valueOf(o));
+        }
+        return sorted;
+    }
+}
@@ -0,0 +1,130 @@
+package preprocessor.extractor;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 1度の走査で処理する NameNormalizer が、以前の正規表現による実装と同じ結果を返すことを確かめる。
+ * 分割結果は学習データの単語列そのものなので、変わると既存のモデルや語彙と合わなくなる
+ */
+class NameNormalizerTest {
+    private static final List<String> CORPUS = Arrays.asList(
+            // camelCase と略語
+            "getName", "toString", "getHTTPResponse", "HTTPServer", "XMLHttpRequest", "parseXMLToJSON",
+            "ID", "getID", "getIDs", "IOException", "getX", "getXYZ", "A", "ABC", "aB", "AbC", "iPhone",
+            // 数字
+            "get2", "get123Value", "parseXML2JSON", "utf8Decode", "v1_2_3", "123", "x9y", "sha256Hash",
+            // _ と $
+            "snake_case_name", "_private", "__init__", "_", "__", "get_URL_v2", "SCREAMING_CASE",
+            "$proxy", "value$1", "$", "a$b$C", "access$000", "lambda$main$0",
+            // 非 ASCII
+            "ÄpfelZählen", "naïveCafé", "getÜber", "日本語メソッド", "取得Name", "µSeconds", " nbsp",
+            "emoji😀Name", "İstanbul", "ǅungla", "ΣίσυφοςName",
+            // 空白・区切り・除かれる文字
+            "", " ", "  padded  ", "|pipe|name|", "tab\tname", "new\nline", "x\\ny", "\\n", "a//ss b", "//s",
+            "quote\"d", "it's", "a,b", "\"\"", "x\u0000y", "\u007f", "a b c", "|", " | ", "\u000bvt\u000bname",
+            "\u001ccontrol\u001dseparated", "dash-name", "dot.name", "a1B2c3D"
+    );
+
+    @Test
+    void subtokenizeMethodNameMatchesRegexImplementation() {
+        for (String name : corpus()) {
+            assertEquals(LegacyNameNormalizer.subtokenizeMethodName(name), NameNormalizer.subtokenizeMethodName(name),
+                    () -> "subtokenizeMethodName(" + escape(name) + ")");
+        }
+    }
+
+    @Test
+    void normalizeNameMatchesRegexImplementation() {
+        for (String name : corpus()) {
+            for (String defaultString : Arrays.asList("", "<default>")) {
+                assertEquals(LegacyNameNormalizer.normalizeName(name, defaultString), NameNormalizer.normalizeName(name, defaultString),
+                        () -> "normalizeName(" + escape(name) + ", " + escape(defaultString) + ")");
+            }
+        }
+    }
+
+    @Test
+    void subtokenizeMethodNameGoldenOutput() {
+        // 参照実装ごと変わった場合にも気づけるよう、代表的な名前は結果を直接書いておく
+        assertEquals(Arrays.asList("get", "http", "response"), NameNormalizer.subtokenizeMethodName("getHTTPResponse"));
+        assertEquals(Arrays.asList("xml", "http", "request"), NameNormalizer.subtokenizeMethodName("XMLHttpRequest"));
+        assertEquals(Arrays.asList("parse", "xml", "json"), NameNormalizer.subtokenizeMethodName("parseXML2JSON"));
+        assertEquals(Arrays.asList("get", "url", "v"), NameNormalizer.subtokenizeMethodName("get_URL_v2"));
+        assertEquals(Arrays.asList("value"), NameNormalizer.subtokenizeMethodName("value$1"));
+        assertEquals(Arrays.asList("$"), NameNormalizer.subtokenizeMethodName("$"));
+        assertEquals(Arrays.asList("pfel", "zhlen"), NameNormalizer.subtokenizeMethodName("ÄpfelZählen"));
+        assertEquals(Arrays.asList("name"), NameNormalizer.subtokenizeMethodName("取得Name"));
+        assertEquals(Arrays.asList("pipe", "name"), NameNormalizer.subtokenizeMethodName("|pipe|name|"));
+        assertEquals(Collections.emptyList(), NameNormalizer.subtokenizeMethodName("__"));
+    }
+
+    // 固定の名前に加え、紛らわしい文字を組み合わせた名前を決まった乱数で作る
+    private static List<String> corpus() {
+        List<String> corpus = new ArrayList<>(CORPUS);
+        char[] alphabet = "aZbY09_$| \t\\n/s\"',.-äÄ日 \u0000\u007f".toCharArray();
+        Random random = new Random(13);
+        for (int i = 0; i < 5000; i++) {
+            StringBuilder sb = new StringBuilder();
+            int length = random.nextInt(12);
+            for (int j = 0; j < length; j++) {
+                sb.append(alphabet[random.nextInt(alphabet.length)]);
+            }
+            corpus.add(sb.toString());
+        }
+        return corpus;
+    }
+
+    private static String escape(String s) {
+        StringBuilder sb = new StringBuilder("\"");
+        for (char c : s.toCharArray()) {
+            if (c < 0x20 || c > 0x7E) {
+                sb.append(String.format("\\u%04x", (int) c));
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.append('"').toString();
+    }
+
+    /**
+     * 1度の走査に書き換える前の、正規表現による実装
+     */
+    private static class LegacyNameNormalizer {
+        static String normalizeName(String original, String defaultString) {
+            original = original.toLowerCase().replaceAll("\\\\n", "") // escaped new
+                    // lines
+                    .replaceAll("//s+", "") // whitespaces
+                    .replaceAll("[\"',]", "") // quotes, apostrophies, commas
+                    .replaceAll("\\P{Print}", ""); // unicode weird characters
+            String stripped = original.replaceAll("[^A-Za-z]", "");
+            if (stripped.length() == 0) {
+                String carefulStripped = original.replaceAll(" ", "_");
+                if (carefulStripped.length() == 0) {
+                    return defaultString;
+                } else {
+                    return carefulStripped;
+                }
+            } else {
+                return stripped;
+            }
+        }
+
+        static List<String> subtokenizeMethodName(String str1) {
+            String str2 = str1.replace("|", " ");
+            String str3 = str2.trim();
+            return Stream.of(str3.split("(?<=[a-z])(?=[A-Z])|_|[0-9]|(?<=[A-Z])(?=[A-Z][a-z])|\\s+"))
+                    .filter(s -> s.length() > 0).map(s -> normalizeName(s, ""))
+                    .filter(s -> s.length() > 0).collect(Collectors.toCollection(ArrayList::new));
+        }
+    }
+}
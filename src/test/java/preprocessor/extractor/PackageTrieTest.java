@@ -0,0 +1,118 @@
+package preprocessor.extractor;
+
+import org.apache.commons.lang3.tuple.Pair;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * PackageTrie による import とプロジェクト内のパッケージの対応づけが、以前の全パッケージを split して比べる実装と
+ * 同じ結果を返すことを確かめる。先頭から2セグメント以上の一致が必要なこと、一致の長さが同じなら先に現れたパッケージを
+ * 優先すること、パッケージそのものやその途中までの import の扱いが変わると、候補パッケージが変わってしまう
+ */
+class PackageTrieTest {
+    private static final List<String> PACKAGES = Arrays.asList(
+            "com.example", "com.example.shop", "com.example.shop.order", "com.example.shop.item",
+            "com.example.util", "com.other.shop", "org.sample", "org.sample.core.internal", "single",
+            "com.example.shop.order.impl", "net.a.b.c.d.e"
+    );
+    private static final List<String> IMPORTS = Arrays.asList(
+            // パッケージそのもの・クラス・static import・ワイルドカード
+            "com.example", "com.example.shop", "com.example.shop.order.Order", "com.example.shop.order.Order.create",
+            "com.example.shop.*", "com.example.shop.order.impl.OrderImpl", "com.example.util.Strings",
+            // パッケージの途中まで・1セグメントだけの一致
+            "com", "com.example.sh", "com.other", "com.unknown.Foo", "single", "single.Foo", "org.sample.core",
+            "org.sample.core.Foo", "net.a.b", "net.a.b.c.d.e.f.G",
+            // ライブラリ
+            "java.util.List", "java.util.*", "org.junit.jupiter.api.Test", "Foo", "", "com.", "com..example"
+    );
+
+    @Test
+    void findLongestMatchMatchesSplitLoop() {
+        // 同じ一致の長さのパッケージが複数あるときの優先順位も比べるよう、順序を変えた集合でも確かめる
+        List<Collection<String>> packageSets = Arrays.asList(
+                new LinkedHashSet<>(PACKAGES), reversed(PACKAGES), new HashSet<>(PACKAGES));
+        for (Collection<String> packages : packageSets) {
+            assertSameMatches(packages, IMPORTS);
+        }
+    }
+
+    @Test
+    void findLongestMatchMatchesSplitLoopOnRandomPackages() {
+        // 少ない種類のセグメントから作り、共通の接頭辞を持つ名前が多くなるようにする
+        String[] segments = {"a", "b", "c", "ab", "shop", "x"};
+        Random random = new Random(7);
+        for (int round = 0; round < 500; round++) {
+            Set<String> packages = new LinkedHashSet<>();
+            int packageCount = 1 + random.nextInt(20);
+            for (int i = 0; i < packageCount; i++) {
+                packages.add(randomName(random, segments, 1 + random.nextInt(5)));
+            }
+            List<String> imports = new ArrayList<>(packages);
+            for (int i = 0; i < 30; i++) {
+                imports.add(randomName(random, segments, 1 + random.nextInt(6)));
+            }
+            assertSameMatches(packages, imports);
+        }
+    }
+
+    private static void assertSameMatches(Collection<String> packages, List<String> imports) {
+        PackageTrie trie = new PackageTrie(packages);
+        for (String importPackage : imports) {
+            assertEquals(legacyCorrespondingPackage(importPackage, packages),
+                    CandidatePackageCalculator.getCorrespondingPackage(importPackage, trie),
+                    () -> "import " + importPackage + " in " + packages);
+        }
+    }
+
+    private static String randomName(Random random, String[] segments, int depth) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < depth; i++) {
+            if (i > 0) {
+                sb.append('.');
+            }
+            sb.append(segments[random.nextInt(segments.length)]);
+        }
+        return sb.toString();
+    }
+
+    private static List<String> reversed(List<String> list) {
+        List<String> reversed = new ArrayList<>(list);
+        Collections.reverse(reversed);
+        return reversed;
+    }
+
+    /**
+     * PackageTrie を使う前の、全パッケージを split して先頭から比べる実装
+     */
+    private static Pair<Boolean, String> legacyCorrespondingPackage(String importPackage, Collection<String> allPackages) {
+        String[] target = importPackage.split("\\.");
+        int max_i = 0;
+        String max_package = null;
+        for (String p : allPackages) {
+            String[] projectPackage = p.split("\\.");
+            for (int i = 0; i < projectPackage.length; i++) {
+                if (target.length <= i || !projectPackage[i].equals(target[i])) {
+                    break;
+                }
+                if (i > max_i) {
+                    max_i = i;
+                    max_package = p;
+                }
+            }
+        }
+        boolean matched = max_i > 0;
+        String result = matched ? max_package : importPackage;
+        return Pair.of(matched, result);
+    }
+}
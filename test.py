@@ -32,18 +32,36 @@ def to_sequence(batch):
     return np.asarray(sequence, dtype='int32')
 
 
+def iterate_records(project_path):
+    # --packed_test_output の出力は test.idx のオフセットで test.dat から各メソッドのレコードを切り出す
+    if os.path.exists(project_path + '/test.dat'):
+        offsets = np.fromfile(project_path + '/test.idx', dtype='<i8')
+        # レコードが1件もないプロジェクトは test.dat が空になる (空のファイルは memmap できない)
+        if len(offsets) < 2 or offsets[-1] == 0 or os.path.getsize(project_path + '/test.dat') == 0:
+            return
+        data = np.memmap(project_path + '/test.dat', dtype=np.uint8, mode='r')
+        for i in range(len(offsets) - 1):
+            yield bytes(data[offsets[i]:offsets[i + 1]]).decode('utf-8').splitlines()
+    else:
+        for filename in os.listdir(project_path):
+            with open(project_path + '/' + filename, mode='r') as f:
+                yield f.readlines()
+
+
 def iterate_data():
     DATA_PATH = 'data/test'
     for project in os.listdir(DATA_PATH):
-        for filename in os.listdir(DATA_PATH + '/' + project):
+        # 前処理の一時ディレクトリなど、. で始まるものはプロジェクトではない
+        if project.startswith('.'):
+            continue
+        for record in iterate_records(DATA_PATH + '/' + project):
             lines = []
-            with open(DATA_PATH + '/' + project + '/' + filename, mode='r') as f:
-                for i, line in enumerate(f.readlines()):
-                    line = line.rstrip()
-                    if i == 0:
-                        correct_index = int(line)
-                    else:
-                        lines.append(line)
+            for i, line in enumerate(record):
+                line = line.rstrip()
+                if i == 0:
+                    correct_index = int(line)
+                else:
+                    lines.append(line)
             names = [line.split(' ')[:15] for line in lines]
             names = to_sequence(names)
             distances = np.array([line.split(' ')[15:-1] for line in lines])